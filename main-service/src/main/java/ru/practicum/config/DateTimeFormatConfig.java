@@ -1,24 +1,21 @@
 package ru.practicum.config;
 
-import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
-import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-
-import java.time.format.DateTimeFormatter;
+import ru.practicum.statsdto.DateTimeCodec;
+import ru.practicum.statsdto.LocalDateTimeDeserializer;
+import ru.practicum.statsdto.LocalDateTimeSerializer;
 
 @Configuration
 public class DateTimeFormatConfig {
 
-    private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
-
     @Bean
     public Jackson2ObjectMapperBuilderCustomizer jsonCustomizer() {
         return builder -> {
-            builder.simpleDateFormat(DATE_TIME_FORMAT);
-            builder.serializers(new LocalDateTimeSerializer(DateTimeFormatter.ofPattern(DATE_TIME_FORMAT)));
-            builder.deserializers(new LocalDateTimeDeserializer(DateTimeFormatter.ofPattern(DATE_TIME_FORMAT)));
+            builder.simpleDateFormat(DateTimeCodec.PATTERN);
+            builder.serializers(new LocalDateTimeSerializer());
+            builder.deserializers(new LocalDateTimeDeserializer());
         };
     }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package ru.practicum.config;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/*
+ * Бины из пакетов ewm.startup.lazy-packages создаются при первом обращении, а не на старте.
+ * Для редко вызываемых админских контроллеров это профиль lazy (application-lazy.properties).
+ */
+@Configuration
+public class LazyInitConfig {
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyPackagesPostProcessor(Environment environment) {
+        List<String> packages = Binder.get(environment)
+                .bind("ewm.startup.lazy-packages", Bindable.listOf(String.class))
+                .orElse(List.of());
+
+        return beanFactory -> {
+            if (packages.isEmpty()) {
+                return;
+            }
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                String className = definition.getBeanClassName();
+                if (className != null && packages.stream().anyMatch(pkg -> className.startsWith(pkg + "."))) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+}
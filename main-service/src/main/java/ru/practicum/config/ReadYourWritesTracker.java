@@ -0,0 +1,42 @@
+package ru.practicum.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/*
+ * Клиент, который только что писал, какое-то время читает с primary, чтобы не увидеть реплику,
+ * ещё не догнавшую его же запись. Клиент - userId из /users/{userId}/..., иначе адрес.
+ */
+public class ReadYourWritesTracker {
+    private final ThreadLocal<String> currentClient = new ThreadLocal<>();
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesTracker(Duration stickiness) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(stickiness)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    public void bind(String client) {
+        currentClient.set(client);
+    }
+
+    public void clear() {
+        currentClient.remove();
+    }
+
+    public void markWrite() {
+        String client = currentClient.get();
+        if (client != null) {
+            recentWriters.put(client, Boolean.TRUE);
+        }
+    }
+
+    public boolean isSticky() {
+        String client = currentClient.get();
+        return client != null && recentWriters.getIfPresent(client) != null;
+    }
+}
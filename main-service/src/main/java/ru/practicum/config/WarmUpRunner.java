@@ -0,0 +1,129 @@
+package ru.practicum.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.dto.CategoryDto;
+import ru.practicum.model.dto.EventFullDto;
+import ru.practicum.model.dto.EventShortDto;
+import ru.practicum.model.dto.LocationDto;
+import ru.practicum.model.dto.NewEventDto;
+import ru.practicum.model.dto.UserShortDto;
+import ru.practicum.model.entity.Category;
+import ru.practicum.model.enums.EventState;
+import ru.practicum.model.mapper.EventMapper;
+import ru.practicum.model.projection.EventShortView;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.EventSpecifications;
+import ru.practicum.service.ReferenceDataService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Прогрев до приёма трафика: кэши категорий и инициаторов, горячие запросы, маппер и Jackson.
+ * ApplicationReadyEvent, а вместе с ним readiness ACCEPTING_TRAFFIC, публикуется только после всех
+ * ApplicationRunner, поэтому /actuator/health/readiness остаётся OUT_OF_SERVICE, пока прогрев не закончится.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ewm.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class WarmUpRunner implements ApplicationRunner {
+    private final ObjectMapper objectMapper;
+    private final EventMapper eventMapper;
+    private final EventRepository eventRepository;
+    private final CategoryRepository categoryRepository;
+    private final ReferenceDataService referenceDataService;
+
+    @Value("${ewm.warmup.iterations:200}")
+    private int iterations;
+
+    @Value("${ewm.warmup.page-size:50}")
+    private int pageSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.nanoTime();
+        try {
+            int categories = warmCategories();
+            List<EventShortView> events = warmEvents();
+            warmMappingAndSerialization(events);
+            log.info("Warm-up finished in {} ms: {} categories, {} events, {} iterations",
+                    (System.nanoTime() - started) / 1_000_000, categories, events.size(), iterations);
+        } catch (Exception e) {
+            // недогретый инстанс лучше, чем не поднявшийся
+            log.warn("Warm-up failed after {} ms, starting cold: {}", (System.nanoTime() - started) / 1_000_000,
+                    e.getMessage());
+        }
+    }
+
+    private int warmCategories() {
+        List<Category> categories = categoryRepository.findAllBy(PageRequest.of(0, pageSize));
+        categories.forEach(category -> referenceDataService.getCategory(category.getId()));
+        return categories.size();
+    }
+
+    private List<EventShortView> warmEvents() {
+        List<EventShortView> events = eventRepository.findShortViews(
+                EventSpecifications.forPublicSearch(null, null, null, null, null, false),
+                PageRequest.of(0, pageSize));
+        events.forEach(event -> referenceDataService.getUserShort(event.getInitiatorId()));
+        return events;
+    }
+
+    private void warmMappingAndSerialization(List<EventShortView> events) throws Exception {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<EventShortView> views = new ArrayList<>(events);
+        if (views.isEmpty()) {
+            views.add(new EventShortView(0L, "warm-up annotation", 0L, "warm-up", now, 0L, "warm-up",
+                    false, "warm-up", now));
+        }
+
+        EventFullDto fullDto = EventFullDto.builder()
+                .id(0L)
+                .annotation("warm-up annotation")
+                .category(CategoryDto.builder().id(0L).name("warm-up").build())
+                .confirmedRequests(0)
+                .createdOn(now)
+                .description("warm-up description")
+                .eventDate(now)
+                .initiator(UserShortDto.builder().id(0L).name("warm-up").build())
+                .location(LocationDto.builder().lat(0f).lon(0f).build())
+                .paid(false)
+                .participantLimit(0)
+                .publishedOn(now)
+                .requestModeration(true)
+                .state(EventState.PUBLISHED)
+                .title("warm-up")
+                .views(0L)
+                .build();
+        String newEventJson = objectMapper.writeValueAsString(NewEventDto.builder()
+                .annotation("warm-up annotation")
+                .category(0L)
+                .description("warm-up description")
+                .eventDate(now)
+                .location(LocationDto.builder().lat(0f).lon(0f).build())
+                .title("warm-up")
+                .build());
+
+        for (int i = 0; i < iterations; i++) {
+            List<EventShortDto> shortDtos = new ArrayList<>(views.size());
+            for (EventShortView view : views) {
+                shortDtos.add(eventMapper.toShortDto(view, 0, 0L));
+            }
+            objectMapper.writeValueAsBytes(shortDtos);
+            objectMapper.writeValueAsBytes(fullDto);
+            objectMapper.readValue(newEventJson, NewEventDto.class);
+        }
+    }
+}
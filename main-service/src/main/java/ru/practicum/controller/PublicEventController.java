@@ -1,6 +1,9 @@
 package ru.practicum.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
@@ -10,16 +13,22 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.model.dto.EventFacetsDto;
 import ru.practicum.model.dto.EventFullDto;
+import ru.practicum.model.dto.EventSearchResultDto;
 import ru.practicum.model.dto.EventShortDto;
+import ru.practicum.model.enums.FacetOption;
 import ru.practicum.model.enums.SortOption;
 import ru.practicum.service.EventService;
 import ru.practicum.service.StatsService;
+import ru.practicum.statsdto.TopWindow;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -32,16 +41,20 @@ public class PublicEventController {
     private final StatsService statsService;
 
     @GetMapping
-    public ResponseEntity<List<EventShortDto>> getEvents(
+    public ResponseEntity<?> getEvents(
             @RequestParam(required = false) String text,
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) Boolean paid,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeStart,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeEnd,
             @RequestParam(defaultValue = "false") Boolean onlyAvailable,
+            @RequestParam(required = false) @DecimalMin("-90") @DecimalMax("90") Double lat,
+            @RequestParam(required = false) @DecimalMin("-180") @DecimalMax("180") Double lon,
+            @RequestParam(required = false) @Positive Double radius,
             @RequestParam(required = false) SortOption sort,
             @RequestParam(defaultValue = "0") @PositiveOrZero Integer from,
             @RequestParam(defaultValue = "10") @Positive Integer size,
+            @RequestParam(required = false) List<String> facets,
             HttpServletRequest request) {
 
         if (statsService == null) {
@@ -50,8 +63,12 @@ public class PublicEventController {
         if (rangeStart != null && rangeEnd != null && rangeStart.isAfter(rangeEnd)) {
             throw new ValidationException("Дата начала должна быть раньше даты окончания");
         }
+        if ((lat == null) != (lon == null) || (radius != null && lat == null)) {
+            throw new ValidationException("Параметры lat и lon задаются вместе, radius (км) - только вместе с ними");
+        }
+        Set<FacetOption> facetOptions = parseFacets(facets);
         try {
-            statsService.saveHit("main-service", "/events", request.getRemoteAddr(),
+            statsService.saveHit(StatsService.APP, "/events", request.getRemoteAddr(),
                     LocalDateTime.now(), null);
             log.info("Saved hit for /events from IP: {}", request.getRemoteAddr());
         } catch (Exception e) {
@@ -60,10 +77,46 @@ public class PublicEventController {
 
         List<EventShortDto> events = eventService.getPublicEvents(
                 text, categories, paid,
-                rangeStart != null ? rangeStart.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) : null,
-                rangeEnd != null ? rangeEnd.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) : null,
-                onlyAvailable, sort != null ? sort.name() : null, from, size);
+                rangeStart, rangeEnd, onlyAvailable, lat, lon, radius,
+                sort != null ? sort.name() : null, from, size);
+
+        // без facets ответ остаётся прежним списком
+        if (facetOptions.isEmpty()) {
+            return ResponseEntity.ok(events);
+        }
+        EventFacetsDto eventFacets = eventService.getPublicEventFacets(
+                text, categories, paid,
+                rangeStart, rangeEnd, onlyAvailable, lat, lon, radius, facetOptions);
+        return ResponseEntity.ok(new EventSearchResultDto(events, eventFacets));
+    }
 
+    private Set<FacetOption> parseFacets(List<String> facets) {
+        Set<FacetOption> result = EnumSet.noneOf(FacetOption.class);
+        if (facets == null) {
+            return result;
+        }
+        for (String facet : facets) {
+            try {
+                result.add(FacetOption.valueOf(facet.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Неизвестная фасета: " + facet);
+            }
+        }
+        return result;
+    }
+
+    @GetMapping("/trending")
+    public ResponseEntity<List<EventShortDto>> getTrendingEvents(
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(defaultValue = "10") @Positive @Max(100) Integer size) {
+        log.info("Getting trending events for window: {}, size: {}", window, size);
+        TopWindow topWindow;
+        try {
+            topWindow = TopWindow.from(window);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Неизвестное окно: " + window + ", допустимы 5m, 1h и 1d");
+        }
+        List<EventShortDto> events = eventService.getTrendingEvents(topWindow, size);
         return ResponseEntity.ok(events);
     }
 
@@ -72,7 +125,7 @@ public class PublicEventController {
         log.info("GET /events/{} from IP: {}", id, request.getRemoteAddr());
 
         try {
-            statsService.saveHit("main-service", "/events/" + id, request.getRemoteAddr(),
+            statsService.saveHit(StatsService.APP, "/events/" + id, request.getRemoteAddr(),
                     LocalDateTime.now(), id);
             log.info("Saved hit for /events/{} from IP: {}", id, request.getRemoteAddr());
         } catch (Exception e) {
@@ -15,7 +15,6 @@ import ru.practicum.model.enums.EventState;
 import ru.practicum.service.EventService;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -44,8 +43,8 @@ public class AdminEventController {
                 users,
                 states != null ? states.stream().map(Enum::name).collect(Collectors.toList()) : null,
                 categories,
-                rangeStart != null ? rangeStart.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) : null,
-                rangeEnd != null ? rangeEnd.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) : null,
+                rangeStart,
+                rangeEnd,
                 from, size);
 
         return ResponseEntity.ok(events);
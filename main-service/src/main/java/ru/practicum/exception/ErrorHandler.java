@@ -3,6 +3,7 @@ package ru.practicum.exception;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -84,6 +85,13 @@ public class ErrorHandler {
         return createApiError(HttpStatus.BAD_REQUEST, INCORRECT_REQUEST_REASON, message);
     }
 
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiError handleNotReadable(HttpMessageNotReadableException e) {
+        log.error("Malformed request body: {}", e.getMessage());
+        return createApiError(HttpStatus.BAD_REQUEST, INCORRECT_REQUEST_REASON, "Malformed request body");
+    }
+
     @ExceptionHandler({IllegalArgumentException.class, DateTimeParseException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiError handleBadRequestExceptions(Exception e) {
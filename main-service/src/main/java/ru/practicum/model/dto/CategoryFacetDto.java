@@ -0,0 +1,16 @@
+package ru.practicum.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryFacetDto {
+    private Long id;
+    private String name;
+    private Long count;
+}
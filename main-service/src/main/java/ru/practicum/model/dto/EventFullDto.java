@@ -6,6 +6,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import ru.practicum.model.enums.EventState;
 
+import java.time.LocalDateTime;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -15,14 +17,14 @@ public class EventFullDto {
     private String annotation;
     private CategoryDto category;
     private Integer confirmedRequests;
-    private String createdOn;
+    private LocalDateTime createdOn;
     private String description;
-    private String eventDate;
+    private LocalDateTime eventDate;
     private UserShortDto initiator;
     private LocationDto location;
     private Boolean paid;
     private Integer participantLimit;
-    private String publishedOn;
+    private LocalDateTime publishedOn;
     private Boolean requestModeration;
     private EventState state;
     private String title;
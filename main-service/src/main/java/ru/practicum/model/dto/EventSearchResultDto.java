@@ -0,0 +1,17 @@
+package ru.practicum.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventSearchResultDto {
+    private List<EventShortDto> events;
+    private EventFacetsDto facets;
+}
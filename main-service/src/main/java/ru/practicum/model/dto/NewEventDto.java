@@ -9,6 +9,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -25,8 +27,8 @@ public class NewEventDto {
     @Size(min = 20, max = 7000)
     private String description;
 
-    @NotBlank
-    private String eventDate;
+    @NotNull
+    private LocalDateTime eventDate;
 
     @NotNull
     private LocationDto location;
@@ -0,0 +1,15 @@
+package ru.practicum.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaidFacetDto {
+    private Boolean paid;
+    private Long count;
+}
@@ -0,0 +1,5 @@
+package ru.practicum.model.enums;
+
+public enum FacetOption {
+    CATEGORY, PAID
+}
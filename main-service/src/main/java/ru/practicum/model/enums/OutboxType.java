@@ -0,0 +1,17 @@
+package ru.practicum.model.enums;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+public enum OutboxType {
+    // пачка предагрегированных хитов для stats-server, payload - JSON-массив EndpointHit
+    HITS,
+    // остальные - уведомления для сброса кешей на всех экземплярах, aggregate_id - id сущности
+    EVENT_CHANGED,
+    REQUESTS_CHANGED,
+    CATEGORY_CHANGED,
+    USER_CHANGED;
+
+    public static final Set<OutboxType> INVALIDATIONS =
+            EnumSet.of(EVENT_CHANGED, REQUESTS_CHANGED, CATEGORY_CHANGED, USER_CHANGED);
+}
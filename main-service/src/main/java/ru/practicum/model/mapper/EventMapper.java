@@ -5,30 +5,17 @@ import ru.practicum.model.dto.*;
 import ru.practicum.model.entity.Event;
 import ru.practicum.model.entity.Location;
 import ru.practicum.model.enums.EventState;
-
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.stream.Collectors;
+import ru.practicum.model.projection.EventShortView;
 
 @Component
 public class EventMapper {
 
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private final CategoryMapper categoryMapper;
-    private final UserMapper userMapper;
-
-    public EventMapper(CategoryMapper categoryMapper, UserMapper userMapper) {
-        this.categoryMapper = categoryMapper;
-        this.userMapper = userMapper;
-    }
-
     public Event toEntity(NewEventDto newEventDto) {
         return Event.builder()
                 .annotation(newEventDto.getAnnotation())
                 .description(newEventDto.getDescription())
                 .title(newEventDto.getTitle())
-                .eventDate(LocalDateTime.parse(newEventDto.getEventDate(), formatter))
+                .eventDate(newEventDto.getEventDate())
                 .paid(newEventDto.getPaid() != null ? newEventDto.getPaid() : false)
                 .participantLimit(newEventDto.getParticipantLimit() != null ? newEventDto.getParticipantLimit() : 0)
                 .requestModeration(newEventDto.getRequestModeration() != null ? newEventDto.getRequestModeration() : true)
@@ -37,7 +24,8 @@ public class EventMapper {
                 .build();
     }
 
-    public EventFullDto toFullDto(Event event, Integer confirmedRequests, Long views) {
+    public EventFullDto toFullDto(Event event, CategoryDto category, UserShortDto initiator,
+                                  Integer confirmedRequests, Long views) {
         if (event == null) {
             return null;
         }
@@ -45,16 +33,16 @@ public class EventMapper {
         return EventFullDto.builder()
                 .id(event.getId())
                 .annotation(event.getAnnotation())
-                .category(categoryMapper.toDto(event.getCategory()))
+                .category(category)
                 .confirmedRequests(confirmedRequests)
-                .createdOn(formatDateTime(event.getCreatedOn()))
+                .createdOn(event.getCreatedOn())
                 .description(event.getDescription())
-                .eventDate(formatDateTime(event.getEventDate()))
-                .initiator(userMapper.toShortDto(event.getInitiator()))
+                .eventDate(event.getEventDate())
+                .initiator(initiator)
                 .location(toDtoLocation(event.getLocation()))
                 .paid(event.getPaid())
                 .participantLimit(event.getParticipantLimit())
-                .publishedOn(formatDateTime(event.getPublishedOn()))
+                .publishedOn(event.getPublishedOn())
                 .requestModeration(event.getRequestModeration())
                 .state(event.getState())
                 .title(event.getTitle())
@@ -62,7 +50,8 @@ public class EventMapper {
                 .build();
     }
 
-    public EventShortDto toShortDto(Event event, Integer confirmedRequests, Long views) {
+    public EventShortDto toShortDto(Event event, CategoryDto category, UserShortDto initiator,
+                                    Integer confirmedRequests, Long views) {
         if (event == null) {
             return null;
         }
@@ -70,24 +59,38 @@ public class EventMapper {
         return EventShortDto.builder()
                 .id(event.getId())
                 .annotation(event.getAnnotation())
-                .category(categoryMapper.toDto(event.getCategory()))
+                .category(category)
                 .confirmedRequests(confirmedRequests)
-                .eventDate(formatDateTime(event.getEventDate()))
-                .initiator(userMapper.toShortDto(event.getInitiator()))
+                .eventDate(event.getEventDate())
+                .initiator(initiator)
                 .paid(event.getPaid())
                 .title(event.getTitle())
                 .views(views)
                 .build();
     }
 
-    public List<EventShortDto> toShortDtoList(List<Event> events) {
-        return events.stream()
-                .map(event -> toShortDto(event, 0, 0L))
-                .collect(Collectors.toList());
-    }
+    public EventShortDto toShortDto(EventShortView view, Integer confirmedRequests, Long views) {
+        if (view == null) {
+            return null;
+        }
 
-    private String formatDateTime(LocalDateTime dateTime) {
-        return dateTime != null ? dateTime.format(formatter) : null;
+        return EventShortDto.builder()
+                .id(view.getId())
+                .annotation(view.getAnnotation())
+                .category(CategoryDto.builder()
+                        .id(view.getCategoryId())
+                        .name(view.getCategoryName())
+                        .build())
+                .confirmedRequests(confirmedRequests)
+                .eventDate(view.getEventDate())
+                .initiator(UserShortDto.builder()
+                        .id(view.getInitiatorId())
+                        .name(view.getInitiatorName())
+                        .build())
+                .paid(view.getPaid())
+                .title(view.getTitle())
+                .views(views)
+                .build();
     }
 
     private Location toEntityLocation(LocationDto locationDto) {
@@ -119,7 +122,7 @@ public class EventMapper {
             event.setTitle(updateRequest.getTitle());
         }
         if (updateRequest.getEventDate() != null) {
-            event.setEventDate(LocalDateTime.parse(updateRequest.getEventDate(), formatter));
+            event.setEventDate(updateRequest.getEventDate());
         }
         if (updateRequest.getPaid() != null) {
             event.setPaid(updateRequest.getPaid());
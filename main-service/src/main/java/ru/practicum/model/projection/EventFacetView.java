@@ -0,0 +1,13 @@
+package ru.practicum.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class EventFacetView {
+    private Long categoryId;
+    private String categoryName;
+    private Boolean paid;
+    private Long count;
+}
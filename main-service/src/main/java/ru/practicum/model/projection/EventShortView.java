@@ -0,0 +1,21 @@
+package ru.practicum.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+public class EventShortView {
+    private Long id;
+    private String annotation;
+    private Long categoryId;
+    private String categoryName;
+    private LocalDateTime eventDate;
+    private Long initiatorId;
+    private String initiatorName;
+    private Boolean paid;
+    private String title;
+    private LocalDateTime publishedOn;
+}
@@ -0,0 +1,18 @@
+package ru.practicum.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.model.entity.Event;
+import ru.practicum.model.projection.EventFacetView;
+import ru.practicum.model.projection.EventShortView;
+
+import java.util.List;
+
+public interface EventRepositoryCustom {
+    List<EventShortView> findShortViews(Specification<Event> specification, Pageable pageable);
+
+    List<EventShortView> findShortViewsNearest(Specification<Event> specification, double lat, double lon,
+                                               Pageable pageable);
+
+    List<EventFacetView> countFacets(Specification<Event> specification);
+}
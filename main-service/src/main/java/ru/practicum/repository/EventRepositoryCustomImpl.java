@@ -0,0 +1,103 @@
+package ru.practicum.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ru.practicum.model.entity.Category;
+import ru.practicum.model.entity.Event;
+import ru.practicum.model.entity.User;
+import ru.practicum.model.projection.EventFacetView;
+import ru.practicum.model.projection.EventShortView;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+public class EventRepositoryCustomImpl implements EventRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<EventShortView> findShortViews(Specification<Event> specification, Pageable pageable) {
+        return findShortViews(specification, pageable, null);
+    }
+
+    @Override
+    public List<EventShortView> findShortViewsNearest(Specification<Event> specification, double lat, double lon,
+                                                      Pageable pageable) {
+        return findShortViews(specification, pageable, (root, cb) -> cb.asc(cb.function(
+                GeoFunctionContributor.GEO_DISTANCE, Double.class,
+                root.get("location").get("lat"), root.get("location").get("lon"),
+                cb.literal(lat), cb.literal(lon))));
+    }
+
+    // одна группировка по (категория, paid) отдаёт обе фасеты, дальше они досуммируются в памяти
+    @Override
+    public List<EventFacetView> countFacets(Specification<Event> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<EventFacetView> query = cb.createQuery(EventFacetView.class);
+        Root<Event> root = query.from(Event.class);
+        Join<Event, Category> category = root.join("category");
+
+        query.select(cb.construct(EventFacetView.class,
+                category.get("id"),
+                category.get("name"),
+                root.get("paid"),
+                cb.count(root)));
+
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.groupBy(category.get("id"), category.get("name"), root.get("paid"));
+
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private List<EventShortView> findShortViews(Specification<Event> specification, Pageable pageable,
+                                                BiFunction<Root<Event>, CriteriaBuilder, Order> order) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<EventShortView> query = cb.createQuery(EventShortView.class);
+        Root<Event> root = query.from(Event.class);
+        Join<Event, Category> category = root.join("category");
+        Join<Event, User> initiator = root.join("initiator");
+
+        query.select(cb.construct(EventShortView.class,
+                root.get("id"),
+                root.get("annotation"),
+                category.get("id"),
+                category.get("name"),
+                root.get("eventDate"),
+                initiator.get("id"),
+                initiator.get("name"),
+                root.get("paid"),
+                root.get("title"),
+                root.get("publishedOn")));
+
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (order != null) {
+            query.orderBy(order.apply(root, cb), cb.asc(root.get("id")));
+        } else if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<EventShortView> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        return typedQuery.getResultList();
+    }
+}
@@ -47,6 +47,17 @@ public class EventSpecifications {
         };
     }
 
+    public static Specification<Event> withinRadius(Double lat, Double lon, Double radiusKm) {
+        return (root, query, cb) -> {
+            if (lat == null || lon == null || radiusKm == null) {
+                return cb.conjunction();
+            }
+            return cb.isTrue(cb.function(GeoFunctionContributor.GEO_WITHIN, Boolean.class,
+                    root.get("location").get("lat"), root.get("location").get("lon"),
+                    cb.literal(lat), cb.literal(lon), cb.literal(radiusKm * 1000)));
+        };
+    }
+
     public static Specification<Event> withRangeEnd(LocalDateTime rangeEnd) {
         return (root, query, cb) -> {
             if (rangeEnd == null) {
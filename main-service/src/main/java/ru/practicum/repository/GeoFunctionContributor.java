@@ -0,0 +1,35 @@
+package ru.practicum.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+/*
+ * Функции earthdistance для Criteria API. Выражение ll_to_earth(lat, lon) совпадает с выражением
+ * GiST-индекса idx_events_location_earth: фильтр по earth_box и сортировка по <-> (KNN) идут по индексу.
+ * Аргументы: (lat, lon, lat точки, lon точки[, радиус в метрах]).
+ */
+public class GeoFunctionContributor implements FunctionContributor {
+    public static final String GEO_WITHIN = "geo_within";
+    public static final String GEO_DISTANCE = "geo_distance";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicTypeRegistry types = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+
+        functionContributions.getFunctionRegistry()
+                .patternDescriptorBuilder(GEO_WITHIN, "(earth_box(ll_to_earth(?3, ?4), ?5) @> ll_to_earth(?1, ?2)"
+                        + " and earth_distance(ll_to_earth(?3, ?4), ll_to_earth(?1, ?2)) <= ?5)")
+                .setExactArgumentCount(5)
+                .setInvariantType(types.resolve(StandardBasicTypes.BOOLEAN))
+                .register();
+
+        // <-> по cube - хордовое расстояние, монотонное относительно расстояния по поверхности
+        functionContributions.getFunctionRegistry()
+                .patternDescriptorBuilder(GEO_DISTANCE, "(ll_to_earth(?1, ?2) <-> ll_to_earth(?3, ?4))")
+                .setExactArgumentCount(4)
+                .setInvariantType(types.resolve(StandardBasicTypes.DOUBLE))
+                .register();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.model.entity.OutboxMessage;
+import ru.practicum.model.enums.OutboxType;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
+
+    List<OutboxMessage> findByTypeInOrderByIdAsc(Collection<OutboxType> types, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.claimedUntil = null WHERE m.id IN ?1")
+    void releaseClaims(Collection<Long> ids);
+}
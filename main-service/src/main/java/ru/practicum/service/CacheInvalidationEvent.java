@@ -0,0 +1,16 @@
+package ru.practicum.service;
+
+import ru.practicum.model.enums.OutboxType;
+
+// уведомление из outbox, полученное этим экземпляром (в том числе своё собственное)
+public record CacheInvalidationEvent(OutboxType type, Long id) {
+
+    // после переподключения пропущенные уведомления неизвестны - сбрасывается всё
+    public static CacheInvalidationEvent all() {
+        return new CacheInvalidationEvent(null, null);
+    }
+
+    public boolean isAll() {
+        return type == null;
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.enums.OutboxType;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+ * LISTEN на канале OutboxRelay по отдельному соединению мимо пула (оно занято всё время жизни).
+ * Каждое уведомление превращается в CacheInvalidationEvent, кеши подписываются через @EventListener.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationListener {
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxService outboxService;
+    private volatile boolean running;
+    private Thread listener;
+
+    public CacheInvalidationListener(DataSourceProperties dataSourceProperties,
+                                     ApplicationEventPublisher eventPublisher,
+                                     OutboxService outboxService) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.eventPublisher = eventPublisher;
+        this.outboxService = outboxService;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!outboxService.isEnabled()) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + OutboxRelay.INVALIDATION_CHANNEL);
+                if (reconnect) {
+                    eventPublisher.publishEvent(CacheInvalidationEvent.all());
+                }
+                log.info("Listening for cache invalidations on {}", OutboxRelay.INVALIDATION_CHANNEL);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                log.warn("Cache invalidation listener disconnected: {}", e.getMessage());
+            }
+
+            reconnect = true;
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        try {
+            int separator = payload.indexOf(':');
+            OutboxType type = OutboxType.valueOf(payload.substring(0, separator));
+            String id = payload.substring(separator + 1);
+            eventPublisher.publishEvent(new CacheInvalidationEvent(type, "null".equals(id) ? null : Long.valueOf(id)));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed cache invalidation '{}': {}", payload, e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -25,6 +26,8 @@ public class CategoryServiceImpl implements CategoryService {
     private final CategoryRepository categoryRepository;
     private final EventRepository eventRepository;
     private final CategoryMapper categoryMapper;
+    private final ReferenceDataService referenceDataService;
+    private final OutboxService outboxService;
 
     @Override
     @Transactional
@@ -40,6 +43,7 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = ReferenceDataService.CATEGORIES_CACHE, key = "#catId")
     public CategoryDto updateCategory(Long catId, CategoryDto categoryDto) {
         Category category = categoryRepository.findById(catId)
                 .orElseThrow(() -> new EntityNotFoundException("Category with id=" + catId + " was not found"));
@@ -51,11 +55,13 @@ public class CategoryServiceImpl implements CategoryService {
 
         category.setName(categoryDto.getName());
         Category updatedCategory = categoryRepository.save(category);
+        outboxService.categoryChanged(catId);
         return categoryMapper.toDto(updatedCategory);
     }
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = ReferenceDataService.CATEGORIES_CACHE, key = "#catId")
     public void deleteCategory(Long catId) {
         if (!categoryRepository.existsById(catId)) {
             throw new EntityNotFoundException("Category with id=" + catId + " was not found");
@@ -66,6 +72,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryRepository.deleteById(catId);
+        outboxService.categoryChanged(catId);
     }
 
     @Override
@@ -78,8 +85,6 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Override
     public CategoryDto getCategory(Long catId) {
-        Category category = categoryRepository.findById(catId)
-                .orElseThrow(() -> new EntityNotFoundException("Category with id=" + catId + " was not found"));
-        return categoryMapper.toDto(category);
+        return referenceDataService.getCategory(catId);
     }
 }
\ No newline at end of file
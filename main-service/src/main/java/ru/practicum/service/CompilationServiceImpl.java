@@ -17,6 +17,7 @@ import ru.practicum.repository.EventRepository;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -26,6 +27,8 @@ public class CompilationServiceImpl implements CompilationService {
     private final CompilationRepository compilationRepository;
     private final EventRepository eventRepository;
     private final CompilationMapper compilationMapper;
+    private final EventStatsEnricher eventStatsEnricher;
+    private final EventDtoAssembler eventDtoAssembler;
 
     @Override
     @Transactional
@@ -38,7 +41,7 @@ public class CompilationServiceImpl implements CompilationService {
         }
 
         Compilation savedCompilation = compilationRepository.save(compilation);
-        return compilationMapper.toDto(savedCompilation);
+        return toDto(savedCompilation);
     }
 
     @Override
@@ -70,7 +73,7 @@ public class CompilationServiceImpl implements CompilationService {
         }
 
         Compilation updatedCompilation = compilationRepository.save(compilation);
-        return compilationMapper.toDto(updatedCompilation);
+        return toDto(updatedCompilation);
     }
 
     @Override
@@ -84,13 +87,31 @@ public class CompilationServiceImpl implements CompilationService {
             compilations = compilationRepository.findAll(pageable).getContent();
         }
 
-        return compilationMapper.toDtoList(compilations);
+        List<Event> events = compilations.stream()
+                .flatMap(compilation -> compilation.getEvents().stream())
+                .collect(Collectors.toList());
+        EventStatsSnapshot stats = eventStatsEnricher.forEvents(events);
+        return compilations.stream()
+                .map(compilation -> toDto(compilation, stats))
+                .collect(Collectors.toList());
     }
 
     @Override
     public CompilationDto getCompilation(Long compId) {
         Compilation compilation = compilationRepository.findById(compId)
                 .orElseThrow(() -> new EntityNotFoundException("Compilation with id=" + compId + " was not found"));
-        return compilationMapper.toDto(compilation);
+        return toDto(compilation);
+    }
+
+    private CompilationDto toDto(Compilation compilation) {
+        return toDto(compilation, eventStatsEnricher.forEvents(compilation.getEvents()));
+    }
+
+    private CompilationDto toDto(Compilation compilation, EventStatsSnapshot stats) {
+        return compilationMapper.toDto(compilation, compilation.getEvents().stream()
+                .map(event -> eventDtoAssembler.toShortDto(event,
+                        stats.confirmedRequests(event.getId()),
+                        stats.views(event.getId())))
+                .collect(Collectors.toList()));
     }
 }
\ No newline at end of file
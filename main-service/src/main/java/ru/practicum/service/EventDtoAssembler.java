@@ -0,0 +1,36 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.dto.CategoryDto;
+import ru.practicum.model.dto.EventFullDto;
+import ru.practicum.model.dto.EventShortDto;
+import ru.practicum.model.dto.UserShortDto;
+import ru.practicum.model.entity.Event;
+import ru.practicum.model.mapper.EventMapper;
+
+// категория и инициатор берутся из кэша справочников и передаются в EventMapper готовыми DTO
+@Component
+@RequiredArgsConstructor
+public class EventDtoAssembler {
+
+    private final EventMapper eventMapper;
+    private final ReferenceDataService referenceDataService;
+
+    public EventFullDto toFullDto(Event event, Integer confirmedRequests, Long views) {
+        return eventMapper.toFullDto(event, category(event), initiator(event), confirmedRequests, views);
+    }
+
+    public EventShortDto toShortDto(Event event, Integer confirmedRequests, Long views) {
+        return eventMapper.toShortDto(event, category(event), initiator(event), confirmedRequests, views);
+    }
+
+    // getId() у lazy-прокси не инициализирует его, поэтому имена берутся из кэша без запроса в БД
+    private CategoryDto category(Event event) {
+        return event.getCategory() != null ? referenceDataService.getCategory(event.getCategory().getId()) : null;
+    }
+
+    private UserShortDto initiator(Event event) {
+        return event.getInitiator() != null ? referenceDataService.getUserShort(event.getInitiator().getId()) : null;
+    }
+}
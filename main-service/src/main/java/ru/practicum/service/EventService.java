@@ -2,8 +2,12 @@ package ru.practicum.service;
 
 import jakarta.servlet.http.HttpServletRequest;
 import ru.practicum.model.dto.*;
+import ru.practicum.model.enums.FacetOption;
+import ru.practicum.statsdto.TopWindow;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
 public interface EventService {
     EventFullDto createEvent(Long userId, NewEventDto eventDto);
@@ -15,13 +19,20 @@ public interface EventService {
     EventFullDto updateEventByUser(Long userId, Long eventId, UpdateEventUserRequest updateRequest);
 
     List<EventFullDto> getAdminEvents(List<Long> users, List<String> states, List<Long> categories,
-                                      String rangeStart, String rangeEnd, Integer from, Integer size);
+                                      LocalDateTime rangeStart, LocalDateTime rangeEnd, Integer from, Integer size);
 
     EventFullDto updateEventByAdmin(Long eventId, UpdateEventAdminRequest updateRequest);
 
     List<EventShortDto> getPublicEvents(String text, List<Long> categories, Boolean paid,
-                                        String rangeStart, String rangeEnd, Boolean onlyAvailable,
+                                        LocalDateTime rangeStart, LocalDateTime rangeEnd, Boolean onlyAvailable,
+                                        Double lat, Double lon, Double radius,
                                         String sort, Integer from, Integer size);
 
+    EventFacetsDto getPublicEventFacets(String text, List<Long> categories, Boolean paid,
+                                        LocalDateTime rangeStart, LocalDateTime rangeEnd, Boolean onlyAvailable,
+                                        Double lat, Double lon, Double radius, Set<FacetOption> facets);
+
     EventFullDto getPublicEvent(Long id, HttpServletRequest request);
+
+    List<EventShortDto> getTrendingEvents(TopWindow window, Integer size);
 }
\ No newline at end of file
@@ -17,12 +17,16 @@ import ru.practicum.model.entity.Category;
 import ru.practicum.model.entity.Event;
 import ru.practicum.model.entity.User;
 import ru.practicum.model.enums.EventState;
+import ru.practicum.model.enums.FacetOption;
 import ru.practicum.model.enums.StateAction;
 import ru.practicum.model.mapper.EventMapper;
+import ru.practicum.model.projection.EventFacetView;
+import ru.practicum.model.projection.EventShortView;
 import ru.practicum.repository.*;
+import ru.practicum.statsdto.DateTimeCodec;
+import ru.practicum.statsdto.TopWindow;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -35,23 +39,25 @@ public class EventServiceImpl implements EventService {
     private final EventRepository eventRepository;
     private final UserRepository userRepository;
     private final CategoryRepository categoryRepository;
-    private final ParticipationRequestRepository requestRepository;
     private final EventMapper eventMapper;
     private final StatsService statsService;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final ReferenceDataService referenceDataService;
+    private final EventStatsEnricher eventStatsEnricher;
+    private final EventDtoAssembler eventDtoAssembler;
+    private final OutboxService outboxService;
 
     @Override
     @Transactional
     public EventFullDto createEvent(Long userId, NewEventDto eventDto) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User with id=" + userId + " was not found"));
+        referenceDataService.getUserShort(userId);
+        User user = userRepository.getReferenceById(userId);
 
-        Category category = categoryRepository.findById(eventDto.getCategory())
-                .orElseThrow(() -> new EntityNotFoundException("Category with id=" + eventDto.getCategory() + " was not found"));
+        referenceDataService.getCategory(eventDto.getCategory());
+        Category category = categoryRepository.getReferenceById(eventDto.getCategory());
 
-        LocalDateTime eventDate = LocalDateTime.parse(eventDto.getEventDate(), formatter);
+        LocalDateTime eventDate = eventDto.getEventDate();
         if (eventDate.isBefore(LocalDateTime.now().plusHours(2))) {
-            throw new ValidationException("Field: eventDate. Error: must be at least 2 hours from now. Value: " + eventDto.getEventDate());
+            throw new ValidationException("Field: eventDate. Error: must be at least 2 hours from now. Value: " + DateTimeCodec.format(eventDate));
         }
 
         Event event = eventMapper.toEntity(eventDto);
@@ -61,7 +67,7 @@ public class EventServiceImpl implements EventService {
         Event savedEvent = eventRepository.save(event);
         log.info("Created event with id={} for user id={}", savedEvent.getId(), userId);
 
-        EventFullDto eventFullDto = eventMapper.toFullDto(savedEvent, 0, 0L);
+        EventFullDto eventFullDto = eventDtoAssembler.toFullDto(savedEvent, 0, 0L);
         return eventFullDto;
     }
 
@@ -72,16 +78,10 @@ public class EventServiceImpl implements EventService {
         }
 
         Pageable pageable = PageRequest.of(from / size, size);
-        List<Event> events = eventRepository.findByInitiatorId(userId, pageable);
+        List<EventShortView> events = eventRepository.findShortViews(
+                EventSpecifications.withUsers(List.of(userId)), pageable);
 
-        Map<Long, Integer> confirmedRequests = getConfirmedRequests(events);
-        Map<Long, Long> views = getViewsForEvents(events);
-
-        return events.stream()
-                .map(event -> eventMapper.toShortDto(event,
-                        confirmedRequests.getOrDefault(event.getId(), 0),
-                        views.getOrDefault(event.getId(), 0L)))
-                .collect(Collectors.toList());
+        return toShortDtos(events);
     }
 
     @Override
@@ -89,10 +89,8 @@ public class EventServiceImpl implements EventService {
         Event event = eventRepository.findByIdAndInitiatorId(eventId, userId)
                 .orElseThrow(() -> new EntityNotFoundException("Event with id=" + eventId + " was not found for user id=" + userId));
 
-        Integer confirmedRequests = requestRepository.countConfirmedRequestsByEventId(eventId).intValue();
-        Long views = getViewsForEvents(List.of(event)).getOrDefault(eventId, 0L);
-
-        return eventMapper.toFullDto(event, confirmedRequests, views);
+        EventStatsSnapshot stats = eventStatsEnricher.forEvents(List.of(event));
+        return eventDtoAssembler.toFullDto(event, stats.confirmedRequests(eventId), stats.views(eventId));
     }
 
     @Override
@@ -106,17 +104,16 @@ public class EventServiceImpl implements EventService {
         }
 
         if (updateRequest.getEventDate() != null) {
-            LocalDateTime newEventDate = LocalDateTime.parse(updateRequest.getEventDate(), formatter);
+            LocalDateTime newEventDate = updateRequest.getEventDate();
             if (newEventDate.isBefore(LocalDateTime.now().plusHours(2))) {
-                throw new ValidationException("Field: eventDate. Error: must be at least 2 hours from now. Value: " + updateRequest.getEventDate());
+                throw new ValidationException("Field: eventDate. Error: must be at least 2 hours from now. Value: " + DateTimeCodec.format(newEventDate));
             }
             event.setEventDate(newEventDate);
         }
 
         if (updateRequest.getCategory() != null) {
-            Category category = categoryRepository.findById(updateRequest.getCategory())
-                    .orElseThrow(() -> new EntityNotFoundException("Category with id=" + updateRequest.getCategory() + " was not found"));
-            event.setCategory(category);
+            referenceDataService.getCategory(updateRequest.getCategory());
+            event.setCategory(categoryRepository.getReferenceById(updateRequest.getCategory()));
         }
 
         eventMapper.updateEventFromUserRequest(updateRequest, event);
@@ -133,15 +130,14 @@ public class EventServiceImpl implements EventService {
         }
 
         Event updatedEvent = eventRepository.save(event);
-        Integer confirmedRequests = requestRepository.countConfirmedRequestsByEventId(eventId).intValue();
-        Long views = getViewsForEvents(List.of(event)).getOrDefault(eventId, 0L);
-
-        return eventMapper.toFullDto(updatedEvent, confirmedRequests, views);
+        outboxService.eventChanged(eventId);
+        EventStatsSnapshot stats = eventStatsEnricher.forEvents(List.of(updatedEvent));
+        return eventDtoAssembler.toFullDto(updatedEvent, stats.confirmedRequests(eventId), stats.views(eventId));
     }
 
     @Override
     public List<EventFullDto> getAdminEvents(List<Long> users, List<String> states, List<Long> categories,
-                                             String rangeStart, String rangeEnd, Integer from, Integer size) {
+                                             LocalDateTime rangeStart, LocalDateTime rangeEnd, Integer from, Integer size) {
         Pageable pageable = PageRequest.of(from / size, size, Sort.by("id").ascending());
 
         Specification<Event> specification = Specification.where(EventSpecifications.withUsers(users));
@@ -155,21 +151,17 @@ public class EventServiceImpl implements EventService {
 
         specification = specification.and(EventSpecifications.withCategories(categories));
 
-        LocalDateTime start = rangeStart != null ? LocalDateTime.parse(rangeStart, formatter) : null;
-        LocalDateTime end = rangeEnd != null ? LocalDateTime.parse(rangeEnd, formatter) : null;
-
-        specification = specification.and(EventSpecifications.withRangeStart(start));
-        specification = specification.and(EventSpecifications.withRangeEnd(end));
+        specification = specification.and(EventSpecifications.withRangeStart(rangeStart));
+        specification = specification.and(EventSpecifications.withRangeEnd(rangeEnd));
 
         List<Event> events = eventRepository.findAll(specification, pageable).getContent();
 
-        Map<Long, Integer> confirmedRequests = getConfirmedRequests(events);
-        Map<Long, Long> views = getViewsForEvents(events);
+        EventStatsSnapshot stats = eventStatsEnricher.forEvents(events);
 
         return events.stream()
-                .map(event -> eventMapper.toFullDto(event,
-                        confirmedRequests.getOrDefault(event.getId(), 0),
-                        views.getOrDefault(event.getId(), 0L)))
+                .map(event -> eventDtoAssembler.toFullDto(event,
+                        stats.confirmedRequests(event.getId()),
+                        stats.views(event.getId())))
                 .collect(Collectors.toList());
     }
 
@@ -179,9 +171,9 @@ public class EventServiceImpl implements EventService {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new EntityNotFoundException("Event with id=" + eventId + " was not found"));
         if (updateRequest.getEventDate() != null) {
-            LocalDateTime newEventDate = LocalDateTime.parse(updateRequest.getEventDate(), formatter);
+            LocalDateTime newEventDate = updateRequest.getEventDate();
             if (newEventDate.isBefore(LocalDateTime.now())) {
-                throw new ValidationException("Field: eventDate. Error: cannot set event date in the past. Value: " + updateRequest.getEventDate());
+                throw new ValidationException("Field: eventDate. Error: cannot set event date in the past. Value: " + DateTimeCodec.format(newEventDate));
             }
             event.setEventDate(newEventDate);
         }
@@ -202,47 +194,40 @@ public class EventServiceImpl implements EventService {
         }
 
         if (updateRequest.getCategory() != null) {
-            Category category = categoryRepository.findById(updateRequest.getCategory())
-                    .orElseThrow(() -> new EntityNotFoundException("Category with id=" + updateRequest.getCategory() + " was not found"));
-            event.setCategory(category);
+            referenceDataService.getCategory(updateRequest.getCategory());
+            event.setCategory(categoryRepository.getReferenceById(updateRequest.getCategory()));
         }
 
         eventMapper.updateEventFromAdminRequest(updateRequest, event);
 
         Event updatedEvent = eventRepository.save(event);
-        Integer confirmedRequests = requestRepository.countConfirmedRequestsByEventId(eventId).intValue();
-        Long views = getViewsForEvents(List.of(updatedEvent)).getOrDefault(eventId, 0L);
-
-        return eventMapper.toFullDto(updatedEvent, confirmedRequests, views);
+        outboxService.eventChanged(eventId);
+        EventStatsSnapshot stats = eventStatsEnricher.forEvents(List.of(updatedEvent));
+        return eventDtoAssembler.toFullDto(updatedEvent, stats.confirmedRequests(eventId), stats.views(eventId));
     }
 
     @Override
     public List<EventShortDto> getPublicEvents(String text, List<Long> categories, Boolean paid,
-                                               String rangeStart, String rangeEnd, Boolean onlyAvailable,
+                                               LocalDateTime rangeStart, LocalDateTime rangeEnd, Boolean onlyAvailable,
+                                               Double lat, Double lon, Double radius,
                                                String sort, Integer from, Integer size) {
 
         Pageable pageable = PageRequest.of(from / size, size);
 
-        LocalDateTime start = rangeStart != null ? LocalDateTime.parse(rangeStart, formatter) : null;
-        LocalDateTime end = rangeEnd != null ? LocalDateTime.parse(rangeEnd, formatter) : null;
+        Specification<Event> specification = publicSearch(text, categories, paid, rangeStart, rangeEnd, onlyAvailable,
+                lat, lon, radius);
+        // с координатами и без явной сортировки - от ближних к дальним по GiST-индексу
+        List<EventShortView> events = lat != null && lon != null && sort == null
+                ? eventRepository.findShortViewsNearest(specification, lat, lon, pageable)
+                : eventRepository.findShortViews(specification, pageable);
 
-        Specification<Event> specification = EventSpecifications.forPublicSearch(text, categories, paid, start, end, onlyAvailable);
-        List<Event> events = eventRepository.findAll(specification, pageable).getContent();
-
-        Map<Long, Integer> confirmedRequests = getConfirmedRequests(events);
-        Map<Long, Long> views = getViewsForEvents(events);
-
-        List<EventShortDto> result = events.stream()
-                .map(event -> eventMapper.toShortDto(event,
-                        confirmedRequests.getOrDefault(event.getId(), 0),
-                        views.getOrDefault(event.getId(), 0L)))
-                .collect(Collectors.toList());
+        List<EventShortDto> result = toShortDtos(events);
 
         if (sort != null) {
             if (sort.equals("EVENT_DATE")) {
                 result.sort(Comparator.comparing(EventShortDto::getEventDate));
             } else if (sort.equals("VIEWS")) {
-                result.sort(Comparator.comparing(dto -> views.getOrDefault(dto.getId(), 0L)));
+                result.sort(Comparator.comparing(EventShortDto::getViews));
                 Collections.reverse(result);
             }
         }
@@ -250,6 +235,44 @@ public class EventServiceImpl implements EventService {
         return result;
     }
 
+    @Override
+    public EventFacetsDto getPublicEventFacets(String text, List<Long> categories, Boolean paid,
+                                               LocalDateTime rangeStart, LocalDateTime rangeEnd, Boolean onlyAvailable,
+                                               Double lat, Double lon, Double radius, Set<FacetOption> facets) {
+        List<EventFacetView> rows = eventRepository.countFacets(
+                publicSearch(text, categories, paid, rangeStart, rangeEnd, onlyAvailable, lat, lon, radius));
+
+        EventFacetsDto result = new EventFacetsDto();
+        if (facets.contains(FacetOption.CATEGORY)) {
+            Map<Long, CategoryFacetDto> byCategory = new LinkedHashMap<>();
+            for (EventFacetView row : rows) {
+                CategoryFacetDto facet = byCategory.computeIfAbsent(row.getCategoryId(),
+                        id -> new CategoryFacetDto(id, row.getCategoryName(), 0L));
+                facet.setCount(facet.getCount() + row.getCount());
+            }
+            result.setCategory(byCategory.values().stream()
+                    .sorted(Comparator.comparing(CategoryFacetDto::getCount).reversed()
+                            .thenComparing(CategoryFacetDto::getId))
+                    .toList());
+        }
+        if (facets.contains(FacetOption.PAID)) {
+            Map<Boolean, Long> byPaid = rows.stream()
+                    .collect(Collectors.groupingBy(row -> Boolean.TRUE.equals(row.getPaid()), TreeMap::new,
+                            Collectors.summingLong(EventFacetView::getCount)));
+            result.setPaid(byPaid.entrySet().stream()
+                    .map(entry -> new PaidFacetDto(entry.getKey(), entry.getValue()))
+                    .toList());
+        }
+        return result;
+    }
+
+    private Specification<Event> publicSearch(String text, List<Long> categories, Boolean paid,
+                                              LocalDateTime rangeStart, LocalDateTime rangeEnd, Boolean onlyAvailable,
+                                              Double lat, Double lon, Double radius) {
+        return EventSpecifications.forPublicSearch(text, categories, paid, rangeStart, rangeEnd, onlyAvailable)
+                .and(EventSpecifications.withinRadius(lat, lon, radius));
+    }
+
     @Override
     public EventFullDto getPublicEvent(Long id, HttpServletRequest request) {
         Event event = eventRepository.findById(id)
@@ -259,45 +282,47 @@ public class EventServiceImpl implements EventService {
             throw new EntityNotFoundException("Event with id=" + id + " was not found");
         }
 
-        Integer confirmedRequests = requestRepository.countConfirmedRequestsByEventId(id).intValue();
-        List<String> uris = List.of("/events/" + id);
-        Map<Long, Long> views = getViewsForEvents(List.of(event));
-        Long viewCount = views.getOrDefault(id, 0L);
+        EventStatsSnapshot stats = eventStatsEnricher.forPublicEvent(event);
+        Integer confirmedRequests = stats.confirmedRequests(id);
+        Long viewCount = stats.views(id);
 
         log.info("👀 Event id={} has {} confirmed requests and {} views",
                 id, confirmedRequests, viewCount);
 
-        return eventMapper.toFullDto(event, confirmedRequests, viewCount);
+        return eventDtoAssembler.toFullDto(event, confirmedRequests, viewCount);
     }
 
-    private Map<Long, Integer> getConfirmedRequests(List<Event> events) {
-        List<Long> eventIds = events.stream().map(Event::getId).collect(Collectors.toList());
-
+    @Override
+    public List<EventShortDto> getTrendingEvents(TopWindow window, Integer size) {
+        List<Long> eventIds = statsService.getTrendingEventIds(window, size);
         if (eventIds.isEmpty()) {
-            return new HashMap<>();
+            return new ArrayList<>();
         }
 
-        Map<Long, Integer> confirmedRequests = requestRepository.findConfirmedRequestsCountByEventIds(eventIds)
-                .stream()
-                .collect(Collectors.toMap(
-                        result -> (Long) result[0],
-                        result -> ((Long) result[1]).intValue()
-                ));
-
-        eventIds.forEach(eventId -> confirmedRequests.putIfAbsent(eventId, 0));
+        Map<Long, Event> eventsById = eventRepository.findByIds(eventIds).stream()
+                .filter(event -> event.getState() == EventState.PUBLISHED)
+                .collect(Collectors.toMap(Event::getId, event -> event));
+        List<Event> events = eventIds.stream()
+                .map(eventsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-        return confirmedRequests;
-    }
+        EventStatsSnapshot stats = eventStatsEnricher.forEvents(events);
 
-    private Map<Long, Long> getViewsForEvents(List<Event> events) {
-        List<String> uris = events.stream()
-                .map(event -> "/events/" + event.getId())
+        return events.stream()
+                .map(event -> eventDtoAssembler.toShortDto(event,
+                        stats.confirmedRequests(event.getId()),
+                        stats.views(event.getId())))
                 .collect(Collectors.toList());
+    }
 
-        log.info("Getting views for URIs: {}", uris);
-        Map<Long, Long> views = statsService.getViews(uris);
-        log.info("Retrieved views map: {}", views);
+    private List<EventShortDto> toShortDtos(List<EventShortView> events) {
+        EventStatsSnapshot stats = eventStatsEnricher.forShortViews(events);
 
-        return views;
+        return events.stream()
+                .map(event -> eventMapper.toShortDto(event,
+                        stats.confirmedRequests(event.getId()),
+                        stats.views(event.getId())))
+                .collect(Collectors.toList());
     }
 }
\ No newline at end of file
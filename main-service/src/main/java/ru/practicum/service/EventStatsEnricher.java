@@ -0,0 +1,93 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.entity.Event;
+import ru.practicum.model.projection.EventShortView;
+import ru.practicum.repository.ParticipationRequestRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventStatsEnricher {
+
+    private final ParticipationRequestRepository requestRepository;
+    private final StatsService statsService;
+
+    public EventStatsSnapshot forEvents(Collection<Event> events) {
+        Set<Long> eventIds = new LinkedHashSet<>();
+        Map<Long, LocalDateTime> publishedOn = new HashMap<>();
+        for (Event event : events) {
+            eventIds.add(event.getId());
+            if (event.getPublishedOn() != null) {
+                publishedOn.put(event.getId(), event.getPublishedOn());
+            }
+        }
+        return resolve(eventIds, publishedOn);
+    }
+
+    public EventStatsSnapshot forShortViews(Collection<EventShortView> events) {
+        Set<Long> eventIds = new LinkedHashSet<>();
+        Map<Long, LocalDateTime> publishedOn = new HashMap<>();
+        for (EventShortView event : events) {
+            eventIds.add(event.getId());
+            if (event.getPublishedOn() != null) {
+                publishedOn.put(event.getId(), event.getPublishedOn());
+            }
+        }
+        return resolve(eventIds, publishedOn);
+    }
+
+    // публичная карточка события: просмотры из локальных счётчиков, обычно без запроса в stats-server
+    public EventStatsSnapshot forPublicEvent(Event event) {
+        Map<Long, Long> views = event.getPublishedOn() != null
+                ? Map.of(event.getId(), statsService.getEventViews(event.getId(), event.getPublishedOn()))
+                : Map.of();
+        return new EventStatsSnapshot(getConfirmedRequests(Set.of(event.getId())), views);
+    }
+
+    private EventStatsSnapshot resolve(Set<Long> eventIds, Map<Long, LocalDateTime> publishedOn) {
+        if (eventIds.isEmpty()) {
+            return new EventStatsSnapshot(Map.of(), Map.of());
+        }
+        return new EventStatsSnapshot(getConfirmedRequests(eventIds), getViews(publishedOn));
+    }
+
+    private Map<Long, Integer> getConfirmedRequests(Set<Long> eventIds) {
+        return requestRepository.findConfirmedRequestsCountByEventIds(new ArrayList<>(eventIds))
+                .stream()
+                .collect(Collectors.toMap(
+                        result -> (Long) result[0],
+                        result -> ((Long) result[1]).intValue()
+                ));
+    }
+
+    private Map<Long, Long> getViews(Map<Long, LocalDateTime> publishedOn) {
+        if (publishedOn.isEmpty()) {
+            return Map.of();
+        }
+
+        LocalDateTime start = Collections.min(publishedOn.values());
+        List<String> uris = publishedOn.keySet().stream()
+                .map(eventId -> "/events/" + eventId)
+                .collect(Collectors.toList());
+
+        log.info("Getting views for URIs: {} since {}", uris, start);
+        Map<Long, Long> views = statsService.getViews(uris, start);
+        log.info("Retrieved views map: {}", views);
+
+        return views;
+    }
+}
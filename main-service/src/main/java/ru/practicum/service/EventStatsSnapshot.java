@@ -0,0 +1,22 @@
+package ru.practicum.service;
+
+import java.util.Map;
+
+public class EventStatsSnapshot {
+
+    private final Map<Long, Integer> confirmedRequests;
+    private final Map<Long, Long> views;
+
+    public EventStatsSnapshot(Map<Long, Integer> confirmedRequests, Map<Long, Long> views) {
+        this.confirmedRequests = confirmedRequests;
+        this.views = views;
+    }
+
+    public Integer confirmedRequests(Long eventId) {
+        return confirmedRequests.getOrDefault(eventId, 0);
+    }
+
+    public Long views(Long eventId) {
+        return views.getOrDefault(eventId, 0L);
+    }
+}
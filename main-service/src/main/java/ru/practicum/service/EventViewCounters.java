@@ -0,0 +1,146 @@
+package ru.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.enums.OutboxType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Локальные просмотры события для GET /events/{id}: база - уникальные ip из stats-server на момент загрузки,
+ * дельта - новые ip, пришедшие в этот экземпляр после неё. Сами хиты уходят в stats-server асинхронно
+ * через HitAggregator, поэтому в обычном случае карточка события не делает ни одного удалённого вызова.
+ * Запись живёт refresh-interval, потом база перечитывается: так подтягиваются хиты других экземпляров.
+ * В дельту попадает только ip, которого нет среди недавних посетителей события на этом экземпляре
+ * (их история переживает перечитывание базы), а отданное значение не опускается ниже уже отданного:
+ * ip, посчитанный в дельте, но уже бывший в базе, не даёт счётчику откатиться при перечитывании.
+ */
+@Component
+public class EventViewCounters {
+    private final boolean enabled;
+    private final int maxNewVisitors;
+    private final int maxRecentVisitors;
+    private final Cache<Long, EventViews> views;
+    private final Cache<Long, EventHistory> history;
+
+    public EventViewCounters(@Value("${stats-server.views.local:true}") boolean enabled,
+                             @Value("${stats-server.views.refresh-interval:30s}") Duration refreshInterval,
+                             @Value("${stats-server.views.max-events:100000}") long maxEvents,
+                             @Value("${stats-server.views.max-new-visitors:10000}") int maxNewVisitors,
+                             @Value("${stats-server.views.max-recent-visitors:1000}") int maxRecentVisitors) {
+        this.enabled = enabled;
+        this.maxNewVisitors = maxNewVisitors;
+        this.maxRecentVisitors = maxRecentVisitors;
+        this.views = Caffeine.newBuilder()
+                .expireAfterWrite(refreshInterval)
+                .maximumSize(maxEvents)
+                .build();
+        this.history = Caffeine.newBuilder()
+                .maximumSize(maxEvents)
+                .build();
+    }
+
+    public void record(Long eventId, String ip) {
+        if (!enabled) {
+            return;
+        }
+        // ip, уже бывший здесь, ушёл в stats-server раньше и сидит в базе (или уже в дельте)
+        if (!history.get(eventId, id -> new EventHistory(maxRecentVisitors)).firstVisit(ip)) {
+            return;
+        }
+        EventViews eventViews = views.getIfPresent(eventId);
+        if (eventViews == null) {
+            return;
+        }
+        eventViews.newVisitors.add(ip);
+        // для очень популярного события дешевле перечитать базу, чем держать множество ip
+        if (eventViews.newVisitors.size() > maxNewVisitors) {
+            views.asMap().remove(eventId, eventViews);
+        }
+    }
+
+    // null - локальной базы для этого start нет, нужно идти в stats-server
+    public Long get(Long eventId, LocalDateTime start) {
+        if (!enabled) {
+            return null;
+        }
+        EventViews eventViews = views.getIfPresent(eventId);
+        if (eventViews == null || !eventViews.start.equals(start)) {
+            return null;
+        }
+        return monotonic(eventId, start, eventViews.base + eventViews.newVisitors.size());
+    }
+
+    // возвращает значение для ответа: свежая база не может быть меньше уже показанного
+    public long reset(Long eventId, LocalDateTime start, long base) {
+        if (!enabled) {
+            return base;
+        }
+        views.put(eventId, new EventViews(start, base));
+        return monotonic(eventId, start, base);
+    }
+
+    private long monotonic(Long eventId, LocalDateTime start, long value) {
+        return history.get(eventId, id -> new EventHistory(maxRecentVisitors)).atLeastReturned(start, value);
+    }
+
+    // изменённое событие (например, опубликованное заново) перечитывает базу
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        if (event.isAll()) {
+            views.invalidateAll();
+        } else if (event.type() == OutboxType.EVENT_CHANGED) {
+            views.invalidate(event.id());
+        }
+    }
+
+    private static class EventViews {
+        private final LocalDateTime start;
+        private final long base;
+        private final Set<String> newVisitors = ConcurrentHashMap.newKeySet();
+
+        EventViews(LocalDateTime start, long base) {
+            this.start = start;
+            this.base = base;
+        }
+    }
+
+    private static class EventHistory {
+        // недавние ip в порядке обращения; вытесненный ip при возврате посчитается ещё раз,
+        // но отданное значение от этого только может застыть, а не упасть
+        private final Map<String, Boolean> recentVisitors;
+        private LocalDateTime start;
+        private long returned;
+
+        EventHistory(int maxRecentVisitors) {
+            this.recentVisitors = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > maxRecentVisitors;
+                }
+            };
+        }
+
+        synchronized boolean firstVisit(String ip) {
+            return recentVisitors.put(ip, Boolean.TRUE) == null;
+        }
+
+        synchronized long atLeastReturned(LocalDateTime start, long value) {
+            if (!start.equals(this.start)) {
+                this.start = start;
+                returned = value;
+            } else {
+                returned = Math.max(returned, value);
+            }
+            return returned;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.entity.OutboxMessage;
+import ru.practicum.model.enums.OutboxType;
+import ru.practicum.repository.OutboxRepository;
+import ru.practicum.statsdto.EndpointHit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Доставка outbox по двум каналам: хиты - пачкой в stats-server, остальное - через pg_notify
+ * в CacheInvalidationListener всех экземпляров.
+ * Инвалидации: каждый проход - одна транзакция под advisory-локом канала, записи уходят строго по id
+ * и удаляются в той же транзакции. NOTIFY рассылается только при коммите, то есть вместе с удалением.
+ * Хиты: ни транзакция, ни лок не держатся во время HTTP. Пачка сначала захватывается (claimed_until,
+ * короткая транзакция с SKIP LOCKED), потом отправляется и только затем удаляется; хиты, не принятые
+ * частью шардов, заменяются новой записью. Упал экземпляр между отправкой и удалением - захват
+ * истекает через claim-timeout и пачку доставит другой проход (at-least-once, как и раньше).
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+    public static final String INVALIDATION_CHANNEL = "ewm_cache_invalidation";
+
+    private static final long INVALIDATIONS_LOCK = 0x65776d0002L;
+    private static final TypeReference<List<EndpointHit>> HIT_LIST = new TypeReference<>() {
+    };
+    private static final String CLAIM_HITS = """
+        UPDATE outbox SET claimed_until = LOCALTIMESTAMP + make_interval(secs => ?)
+        WHERE id IN (
+            SELECT id FROM outbox
+            WHERE type = 'HITS' AND (claimed_until IS NULL OR claimed_until < LOCALTIMESTAMP)
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED)
+        RETURNING id, payload
+        """;
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxService outboxService;
+    private final StatsHitSender statsHitSender;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final double claimSeconds;
+    private ScheduledExecutorService executor;
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       OutboxService outboxService,
+                       StatsHitSender statsHitSender,
+                       JdbcTemplate jdbcTemplate,
+                       ObjectMapper objectMapper,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${ewm.outbox.poll-interval:200ms}") Duration pollInterval,
+                       @Value("${ewm.outbox.batch-size:500}") int batchSize,
+                       @Value("${ewm.outbox.claim-timeout:1m}") Duration claimTimeout) {
+        this.outboxRepository = outboxRepository;
+        this.outboxService = outboxService;
+        this.statsHitSender = statsHitSender;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pollInterval = pollInterval;
+        this.batchSize = batchSize;
+        this.claimSeconds = claimTimeout.toMillis() / 1000.0;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!outboxService.isEnabled()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::relay, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void relay() {
+        try {
+            relayInvalidations();
+        } catch (RuntimeException e) {
+            log.error("Failed to relay cache invalidations: {}", e.getMessage());
+        }
+        try {
+            relayHits();
+        } catch (RuntimeException e) {
+            log.warn("Failed to relay hits, will retry: {}", e.getMessage());
+        }
+    }
+
+    // канал вычерпывается полными пачками; неполная - значит, записей больше нет
+    private void relayInvalidations() {
+        Integer delivered;
+        do {
+            delivered = transactionTemplate.execute(status -> {
+                if (!tryLock(INVALIDATIONS_LOCK)) {
+                    return 0;
+                }
+                List<OutboxMessage> messages = outboxRepository.findByTypeInOrderByIdAsc(OutboxType.INVALIDATIONS,
+                        PageRequest.of(0, batchSize));
+                messages.forEach(this::notifyInvalidation);
+                outboxRepository.deleteAllByIdInBatch(messages.stream().map(OutboxMessage::getId).toList());
+                return messages.size();
+            });
+        } while (delivered != null && delivered == batchSize);
+    }
+
+    private void relayHits() {
+        List<OutboxMessage> messages;
+        do {
+            messages = claim(CLAIM_HITS, claimSeconds, batchSize);
+        } while (deliverHits(messages) && messages.size() == batchSize);
+    }
+
+    // false - часть хитов не доставлена, продолжать проход сейчас бессмысленно
+    private boolean deliverHits(List<OutboxMessage> messages) {
+        if (messages.isEmpty()) {
+            return true;
+        }
+        List<EndpointHit> undelivered;
+        try {
+            undelivered = statsHitSender.send(readHits(messages));
+        } catch (RuntimeException e) {
+            release(messages);
+            throw e;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxRepository.deleteAllByIdInBatch(messages.stream().map(OutboxMessage::getId).toList());
+            if (!undelivered.isEmpty()) {
+                // принятое другими шардами не повторяется: остаток ждёт следующего прохода новой записью
+                requeueHits(undelivered);
+            }
+        });
+        return undelivered.isEmpty();
+    }
+
+    // захват коммитится сразу, до отправки
+    private List<OutboxMessage> claim(String sql, Object... args) {
+        return transactionTemplate.execute(status -> jdbcTemplate.query(sql,
+                (rs, rowNum) -> OutboxMessage.builder()
+                        .id(rs.getLong("id"))
+                        .payload(rs.getString("payload"))
+                        .build(),
+                args));
+    }
+
+    private void release(List<OutboxMessage> messages) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.releaseClaims(
+                    messages.stream().map(OutboxMessage::getId).toList()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to release claimed hits, they will be retried after the claim expires: {}",
+                    e.getMessage());
+        }
+    }
+
+    private boolean tryLock(long key) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)",
+                Boolean.class, key));
+    }
+
+    private List<EndpointHit> readHits(List<OutboxMessage> messages) {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (OutboxMessage message : messages) {
+            try {
+                hits.addAll(objectMapper.readValue(message.getPayload(), HIT_LIST));
+            } catch (JsonProcessingException e) {
+                // битую запись не доставить никогда, она не должна блокировать канал
+                log.error("Dropping unreadable outbox record {}: {}", message.getId(), e.getMessage());
+            }
+        }
+        return hits;
+    }
+
+    private void requeueHits(List<EndpointHit> hits) {
+        try {
+            outboxRepository.save(OutboxMessage.builder()
+                    .type(OutboxType.HITS)
+                    .payload(objectMapper.writeValueAsString(hits))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize hits for outbox", e);
+        }
+    }
+
+    private void notifyInvalidation(OutboxMessage message) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null,
+                INVALIDATION_CHANNEL, message.getType() + ":" + message.getAggregateId());
+    }
+}
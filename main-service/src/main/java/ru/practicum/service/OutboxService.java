@@ -0,0 +1,77 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.entity.OutboxMessage;
+import ru.practicum.model.enums.OutboxType;
+import ru.practicum.repository.OutboxRepository;
+import ru.practicum.statsdto.EndpointHit;
+
+import java.util.List;
+
+/*
+ * Уведомления об изменениях пишутся только внутри транзакции самого изменения (MANDATORY):
+ * откатилось изменение - откатилось и уведомление. Хиты пишутся отдельной транзакцией,
+ * потому что приходят из HitAggregator, а не из бизнес-операции.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ewm.outbox.enabled:true}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void eventChanged(Long eventId) {
+        invalidate(OutboxType.EVENT_CHANGED, eventId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void requestsChanged(Long eventId) {
+        invalidate(OutboxType.REQUESTS_CHANGED, eventId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void categoryChanged(Long catId) {
+        invalidate(OutboxType.CATEGORY_CHANGED, catId);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void userChanged(Long userId) {
+        invalidate(OutboxType.USER_CHANGED, userId);
+    }
+
+    // пишет поток сброса HitAggregator, а не запрос: своя короткая транзакция
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void hits(List<EndpointHit> hits) {
+        try {
+            outboxRepository.save(OutboxMessage.builder()
+                    .type(OutboxType.HITS)
+                    .payload(objectMapper.writeValueAsString(hits))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize hits for outbox", e);
+        }
+    }
+
+    private void invalidate(OutboxType type, Long id) {
+        if (enabled) {
+            outboxRepository.save(OutboxMessage.builder()
+                    .type(type)
+                    .aggregateId(id)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.practicum.exception.EntityNotFoundException;
+import ru.practicum.model.dto.CategoryDto;
+import ru.practicum.model.dto.UserShortDto;
+import ru.practicum.model.enums.OutboxType;
+import ru.practicum.model.mapper.CategoryMapper;
+import ru.practicum.model.mapper.UserMapper;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.UserRepository;
+
+@Service
+@RequiredArgsConstructor
+public class ReferenceDataService {
+
+    public static final String CATEGORIES_CACHE = "categories";
+    public static final String USER_SHORTS_CACHE = "userShorts";
+
+    private final CategoryRepository categoryRepository;
+    private final UserRepository userRepository;
+    private final CategoryMapper categoryMapper;
+    private final UserMapper userMapper;
+    private final CacheManager cacheManager;
+
+    @Cacheable(cacheNames = CATEGORIES_CACHE, key = "#catId")
+    public CategoryDto getCategory(Long catId) {
+        return categoryRepository.findById(catId)
+                .map(categoryMapper::toDto)
+                .orElseThrow(() -> new EntityNotFoundException("Category with id=" + catId + " was not found"));
+    }
+
+    @Cacheable(cacheNames = USER_SHORTS_CACHE, key = "#userId")
+    public UserShortDto getUserShort(Long userId) {
+        return userRepository.findById(userId)
+                .map(userMapper::toShortDto)
+                .orElseThrow(() -> new EntityNotFoundException("User with id=" + userId + " was not found"));
+    }
+
+    // @CacheEvict сбрасывает только кеш экземпляра, принявшего запрос; остальные узнают через outbox
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        if (event.isAll()) {
+            clear(CATEGORIES_CACHE);
+            clear(USER_SHORTS_CACHE);
+        } else if (event.type() == OutboxType.CATEGORY_CHANGED) {
+            evict(CATEGORIES_CACHE, event.id());
+        } else if (event.type() == OutboxType.USER_CHANGED) {
+            evict(USER_SHORTS_CACHE, event.id());
+        }
+    }
+
+    private void evict(String cacheName, Long key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -31,6 +31,7 @@ public class RequestServiceImpl implements RequestService {
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
     private final RequestMapper requestMapper;
+    private final OutboxService outboxService;
 
     @Override
     @Transactional
@@ -71,6 +72,9 @@ public class RequestServiceImpl implements RequestService {
         }
 
         ParticipationRequest savedRequest = requestRepository.save(request);
+        if (savedRequest.getStatus() == RequestStatus.CONFIRMED) {
+            outboxService.requestsChanged(eventId);
+        }
         return requestMapper.toDto(savedRequest);
     }
 
@@ -90,8 +94,12 @@ public class RequestServiceImpl implements RequestService {
         ParticipationRequest request = requestRepository.findByIdAndRequesterId(requestId, userId)
                 .orElseThrow(() -> new EntityNotFoundException("Request with id=" + requestId + " was not found"));
 
+        boolean wasConfirmed = request.getStatus() == RequestStatus.CONFIRMED;
         request.setStatus(RequestStatus.CANCELED);
         ParticipationRequest updatedRequest = requestRepository.save(request);
+        if (wasConfirmed) {
+            outboxService.requestsChanged(updatedRequest.getEvent().getId());
+        }
 
         return requestMapper.toDto(updatedRequest);
     }
@@ -151,6 +159,9 @@ public class RequestServiceImpl implements RequestService {
                 result.getRejectedRequests().add(requestMapper.toDto(request));
             }
         }
+        if (!requests.isEmpty()) {
+            outboxService.requestsChanged(eventId);
+        }
 
         return result;
     }
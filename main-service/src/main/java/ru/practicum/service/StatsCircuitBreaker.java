@@ -0,0 +1,128 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// состояние одного stats-server (шарда); экземпляры раздаёт StatsCircuitBreakers
+@Slf4j
+public class StatsCircuitBreaker {
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String shard;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long slowCallThresholdNanos;
+    private final long openDurationNanos;
+    private final Duration minHedgeDelay;
+
+    private final boolean[] failures;
+    private int calls;
+    private int position;
+
+    // задержка хеджирования применяется к отдельному запросу чанка, поэтому и p95 считается по чанкам
+    private final long[] chunkLatencies;
+    private int chunkCalls;
+    private int chunkPosition;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    StatsCircuitBreaker(String shard, int windowSize, int minimumCalls, int failureRateThreshold,
+                        Duration slowCallThreshold, Duration openDuration, Duration minHedgeDelay) {
+        this.shard = shard;
+        this.failures = new boolean[windowSize];
+        this.chunkLatencies = new long[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdNanos = slowCallThreshold.toNanos();
+        this.openDurationNanos = openDuration.toNanos();
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess(long elapsedNanos) {
+        // медленный ответ для брейкера так же плох, как ошибка
+        record(elapsedNanos > slowCallThresholdNanos);
+    }
+
+    public synchronized void onFailure(long elapsedNanos) {
+        record(true);
+    }
+
+    public synchronized void onChunk(long elapsedNanos) {
+        chunkLatencies[chunkPosition] = elapsedNanos;
+        chunkPosition = (chunkPosition + 1) % chunkLatencies.length;
+        chunkCalls++;
+    }
+
+    public synchronized Duration hedgeDelay() {
+        if (chunkCalls < minimumCalls) {
+            return Duration.ofNanos(slowCallThresholdNanos);
+        }
+        long[] sorted = Arrays.copyOf(chunkLatencies, Math.min(chunkCalls, chunkLatencies.length));
+        Arrays.sort(sorted);
+        Duration p95 = Duration.ofNanos(sorted[(int) Math.ceil(sorted.length * 0.95) - 1]);
+        return p95.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : p95;
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    private void record(boolean failed) {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                log.info("Stats circuit breaker for {} closed", shard);
+                state = State.CLOSED;
+                calls = 0;
+                position = 0;
+            }
+            return;
+        }
+
+        failures[position] = failed;
+        position = (position + 1) % failures.length;
+        calls++;
+
+        int window = Math.min(calls, failures.length);
+        if (window < minimumCalls) {
+            return;
+        }
+        int failedCalls = 0;
+        for (int i = 0; i < window; i++) {
+            if (failures[i]) {
+                failedCalls++;
+            }
+        }
+        if (failedCalls * 100 >= failureRateThreshold * window) {
+            open();
+        }
+    }
+
+    private void open() {
+        log.warn("Stats circuit breaker for {} opened", shard);
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+}
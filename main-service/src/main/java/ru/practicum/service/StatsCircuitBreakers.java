@@ -0,0 +1,40 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// брейкер на каждый шард: упавший шард не должен отключать запросы к остальным
+@Component
+public class StatsCircuitBreakers {
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final Duration slowCallThreshold;
+    private final Duration openDuration;
+    private final Duration minHedgeDelay;
+    private final Map<String, StatsCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public StatsCircuitBreakers(@Value("${stats-server.breaker.window-size:20}") int windowSize,
+                                @Value("${stats-server.breaker.minimum-calls:10}") int minimumCalls,
+                                @Value("${stats-server.breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                                @Value("${stats-server.breaker.slow-call-threshold:1s}") Duration slowCallThreshold,
+                                @Value("${stats-server.breaker.open-duration:10s}") Duration openDuration,
+                                @Value("${stats-server.hedge.min-delay:20ms}") Duration minHedgeDelay) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    public StatsCircuitBreaker forShard(String shard) {
+        return breakers.computeIfAbsent(shard, url -> new StatsCircuitBreaker(url, windowSize, minimumCalls,
+                failureRateThreshold, slowCallThreshold, openDuration, minHedgeDelay));
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.practicum.statsclient.StatsHttpClientProperties;
+import ru.practicum.statsclient.StatsShardRing;
+import ru.practicum.statsdto.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// отправка пачки хитов по шардам; у каждого шарда свой брейкер, недоставленное возвращается вызывающему
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatsHitSender {
+
+    private final WebClient webClient;
+    private final StatsCircuitBreakers circuitBreakers;
+    private final StatsHttpClientProperties httpClientProperties;
+    private final StatsShardRing shardRing;
+
+    // хиты шардов, чей брейкер открыт или чей запрос не прошёл; доставленное другим шардам не повторяется
+    public List<EndpointHit> send(List<EndpointHit> hits) {
+        List<EndpointHit> undelivered = Collections.synchronizedList(new ArrayList<>());
+        List<Map.Entry<String, List<EndpointHit>>> shards = new ArrayList<>();
+        shardRing.groupForWrite(hits, EndpointHit::getUri).forEach((shard, shardHits) -> {
+            if (circuitBreakers.forShard(shard).allowRequest()) {
+                shards.add(Map.entry(shard, shardHits));
+            } else {
+                log.warn("Stats circuit breaker for {} is open, {} hits not sent", shard, shardHits.size());
+                undelivered.addAll(shardHits);
+            }
+        });
+
+        // таймаут у каждого шарда свой, поэтому общий block ошибкой не завершается
+        Flux.fromIterable(shards)
+                .flatMap(shardHits -> post(shardHits.getKey(), shardHits.getValue())
+                        .onErrorResume(e -> {
+                            log.warn("Failed to send {} hits to {}: {}", shardHits.getValue().size(),
+                                    shardHits.getKey(), e.getMessage());
+                            undelivered.addAll(shardHits.getValue());
+                            return Mono.empty();
+                        }))
+                .then()
+                .block();
+        return undelivered;
+    }
+
+    private Mono<Void> post(String shard, List<EndpointHit> hits) {
+        StatsCircuitBreaker circuitBreaker = circuitBreakers.forShard(shard);
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return webClient.post()
+                    .uri(shard + "/hits")
+                    .contentType(httpClientProperties.getWireFormat().mediaType())
+                    .bodyValue(hits)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .timeout(httpClientProperties.getReadTimeout())
+                    .doOnSuccess(response -> circuitBreaker.onSuccess(System.nanoTime() - started))
+                    .doOnError(e -> circuitBreaker.onFailure(System.nanoTime() - started))
+                    .then();
+        });
+    }
+}
@@ -1,15 +1,24 @@
 package ru.practicum.service;
 
 import ru.practicum.model.dto.ViewStats;
+import ru.practicum.statsdto.TopWindow;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 public interface StatsService {
+    // под этим app main-service пишет свои хиты и по нему же спрашивает топ
+    String APP = "main-service";
+
     void saveHit(String app, String uri, String ip, LocalDateTime timestamp, Long eventId);
 
-    Map<Long, Long> getViews(List<String> uris);
+    Map<Long, Long> getViews(List<String> uris, LocalDateTime start);
+
+    // просмотры одного события, по возможности из локальных счётчиков
+    long getEventViews(Long eventId, LocalDateTime start);
+
+    List<ViewStats> getStatsForUris(List<String> uris, LocalDateTime start);
 
-    List<ViewStats> getStatsForUris(List<String> strings);
+    List<Long> getTrendingEventIds(TopWindow window, Integer limit);
 }
\ No newline at end of file
@@ -1,90 +1,229 @@
 package ru.practicum.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import ru.practicum.model.dto.ViewStats;
+import ru.practicum.statsclient.HitAggregator;
+import ru.practicum.statsclient.StatsHitProperties;
+import ru.practicum.statsclient.StatsHttpClientProperties;
+import ru.practicum.statsclient.StatsShardRing;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.StatsQuery;
+import ru.practicum.statsdto.TopWindow;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
 
+    private static final int QUERY_CHUNK_SIZE = 200;
+    private static final int QUERY_PARALLELISM = 4;
+    private static final int TRENDING_MARGIN = 10;
+    private static final String EVENT_URI_PREFIX = "/events/";
+
     private final WebClient webClient;
+    private final StatsCircuitBreakers circuitBreakers;
+    private final StatsHttpClientProperties httpClientProperties;
+    private final StatsHitProperties hitProperties;
+    private final StatsShardRing shardRing;
+    private final EventViewCounters eventViewCounters;
+    private final StatsHitSender statsHitSender;
+    private final OutboxService outboxService;
+    private HitAggregator hitAggregator;
+    private Cache<Long, Long> lastKnownViews;
+
+    @Value("${stats-server.hedge-url:}")
+    private String hedgeServerUrl;
+
+    @Value("${stats-server.views.max-events:100000}")
+    private long maxLastKnownViews;
 
-    @Value("${stats-server.url:http://localhost:9090}")
-    private String statsServerUrl;
+    @PostConstruct
+    void initLastKnownViews() {
+        lastKnownViews = Caffeine.newBuilder()
+                .maximumSize(maxLastKnownViews)
+                .build();
+    }
 
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    @PostConstruct
+    void startHitAggregation() {
+        if (hitProperties.isAggregate()) {
+            hitAggregator = new HitAggregator(this::saveHits, hitProperties.getFlushInterval());
+        }
+    }
+
+    @PreDestroy
+    void stopHitAggregation() {
+        if (hitAggregator != null) {
+            hitAggregator.close();
+        }
+    }
 
     @Override
     public void saveHit(String app, String uri, String ip, LocalDateTime timestamp, Long eventId) {
-        try {
-            String finalUri = (eventId != null) ? "/events/" + eventId : uri;
+        String finalUri = (eventId != null) ? "/events/" + eventId : uri;
+        if (eventId != null) {
+            eventViewCounters.record(eventId, ip);
+        }
+        if (hitAggregator != null) {
+            hitAggregator.add(EndpointHit.builder()
+                    .app(app)
+                    .uri(finalUri)
+                    .ip(ip)
+                    .timestamp(timestamp)
+                    .build());
+            return;
+        }
+
+        String shard = shardRing.shardFor(finalUri);
+        StatsCircuitBreaker circuitBreaker = circuitBreakers.forShard(shard);
+        if (!circuitBreaker.allowRequest()) {
+            log.warn("Stats circuit breaker for {} is open, dropping hit for uri={}", shard, uri);
+            return;
+        }
 
+        long started = System.nanoTime();
+        try {
             log.info("Saving hit: app={}, uri={}, ip={}, timestamp={}",
-                    app, finalUri, ip, timestamp.format(formatter));
+                    app, finalUri, ip, timestamp);
 
             webClient.post()
-                    .uri(statsServerUrl + "/hit")
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                    .bodyValue(Map.of(
-                            "app", app,
-                            "uri", finalUri,
-                            "ip", ip,
-                            "timestamp", timestamp.format(formatter)
-                    ))
+                    .uri(shard + "/hit")
+                    .contentType(wireFormat())
+                    .bodyValue(EndpointHit.builder()
+                            .app(app)
+                            .uri(finalUri)
+                            .ip(ip)
+                            .timestamp(timestamp)
+                            .build())
                     .retrieve()
                     .toBodilessEntity()
-                    .block();
+                    .block(httpClientProperties.getReadTimeout());
 
+            circuitBreaker.onSuccess(System.nanoTime() - started);
             log.info("Saved hit for event {}: app={}, uri={}, ip={}", eventId, app, finalUri, ip);
 
         } catch (Exception e) {
+            circuitBreaker.onFailure(System.nanoTime() - started);
             log.error("Failed to save hit to stats service: {}", e.getMessage());
         }
     }
 
+    // с outbox пачка сначала сохраняется в БД, и OutboxRelay повторяет доставку, пока stats-server недоступен
+    private void saveHits(List<EndpointHit> hits) {
+        if (outboxService.isEnabled()) {
+            outboxService.hits(hits);
+            return;
+        }
+
+        List<EndpointHit> undelivered = statsHitSender.send(hits);
+        if (undelivered.isEmpty()) {
+            log.debug("Saved {} aggregated hits", hits.size());
+        } else {
+            log.error("Dropped {} of {} aggregated hits: stats shards unavailable", undelivered.size(), hits.size());
+        }
+    }
+
+    // свои неотправленные хиты по этим uri должны попасть в ответ, не дожидаясь планового сброса.
+    // С outbox сброса нет: запись в outbox и доставка шли бы внутри транзакции вызывающего сервиса
+    // (в том числе read-only), поэтому свои хиты видны после планового сброса и прохода OutboxRelay
+    private void flushHits(List<String> uris) {
+        if (hitAggregator == null || outboxService.isEnabled()) {
+            return;
+        }
+        hitAggregator.flush(new HashSet<>(uris)::contains);
+    }
+
     @Override
-    public Map<Long, Long> getViews(List<String> uris) {
-        Map<Long, Long> views = new HashMap<>();
-        if (uris == null || uris.isEmpty()) return views;
+    public Map<Long, Long> getViews(List<String> uris, LocalDateTime start) {
+        if (uris == null || uris.isEmpty()) return new HashMap<>();
+        Map<Long, Long> views = loadViews(uris, start);
+        return views != null ? views : getLastKnownViews(uris);
+    }
 
-        try {
-            String url = String.format("%s/stats?start=2020-01-01 00:00:00&end=2030-12-31 23:59:59&unique=true&uris=%s",
-                    statsServerUrl, String.join(",", uris));
+    @Override
+    public long getEventViews(Long eventId, LocalDateTime start) {
+        Long local = eventViewCounters.get(eventId, start);
+        if (local != null) {
+            return local;
+        }
 
-            ViewStats[] response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(ViewStats[].class)
-                    .block();
+        List<String> uris = List.of("/events/" + eventId);
+        Map<Long, Long> views = loadViews(uris, start);
+        if (views == null) {
+            return getLastKnownViews(uris).getOrDefault(eventId, 0L);
+        }
+        return eventViewCounters.reset(eventId, start, views.getOrDefault(eventId, 0L));
+    }
 
-            if (response != null) {
-                for (ViewStats stats : response) {
-                    Long eventId = extractEventIdFromUri(stats.getUri());
-                    if (eventId != -1L) {
-                        views.put(eventId, stats.getHits());
-                    }
+    // null - недоступны шарды всех uri; uri недоступных шардов получают последнее известное значение
+    private Map<Long, Long> loadViews(List<String> uris, LocalDateTime start) {
+        flushHits(uris);
+
+        Map<Long, Long> views = new HashMap<>();
+        Set<String> unavailable = ConcurrentHashMap.newKeySet();
+        try {
+            for (ViewStats stats : queryStats(uris, start, true, unavailable)) {
+                Long eventId = extractEventIdFromUri(stats.getUri());
+                if (eventId != -1L) {
+                    views.put(eventId, stats.getHits());
                 }
             }
         } catch (Exception e) {
             log.error("Error getting views: {}", e.getMessage());
+            return null;
+        }
+        if (unavailable.containsAll(uris)) {
+            log.warn("Stats shards are unavailable, serving last known views");
+            return null;
         }
 
+        lastKnownViews.putAll(views);
+        if (!unavailable.isEmpty()) {
+            log.warn("Serving last known views for {} uris on unavailable shards", unavailable.size());
+            views.putAll(getLastKnownViews(new ArrayList<>(unavailable)));
+        }
         return views;
     }
 
+    private Map<Long, Long> getLastKnownViews(List<String> uris) {
+        Map<Long, Long> views = new HashMap<>();
+        for (String uri : uris) {
+            Long eventId = extractEventIdFromUri(uri);
+            Long cached = lastKnownViews.getIfPresent(eventId);
+            if (cached != null) {
+                views.put(eventId, cached);
+            }
+        }
+        return views;
+    }
+
+    private static void mergeStats(Map<List<String>, ViewStats> merged, ViewStats stats) {
+        merged.merge(List.of(stats.getApp(), stats.getUri()), stats,
+                (a, b) -> new ViewStats(a.getApp(), a.getUri(), a.getHits() + b.getHits()));
+    }
+
+    private MediaType wireFormat() {
+        return httpClientProperties.getWireFormat().mediaType();
+    }
+
     private Long extractEventIdFromUri(String uri) {
         try {
             if (uri.startsWith("/events/")) {
@@ -98,28 +237,168 @@ public class StatsServiceImpl implements StatsService {
         }
     }
 
-    public List<ViewStats> getStatsForUris(List<String> uris) {
+    @Override
+    public List<ViewStats> getStatsForUris(List<String> uris, LocalDateTime start) {
+        flushHits(uris);
+        Set<String> unavailable = ConcurrentHashMap.newKeySet();
         try {
-            String encodedStart = URLEncoder.encode("2020-05-05 00:00:00", StandardCharsets.UTF_8);
-            String encodedEnd = URLEncoder.encode("2035-05-05 00:00:00", StandardCharsets.UTF_8);
-            String encodedUris = URLEncoder.encode(String.join(",", uris), StandardCharsets.UTF_8);
+            log.info("Requesting stats for {} uris", uris.size());
+            List<ViewStats> stats = queryStats(uris, start, false, unavailable);
+            if (!unavailable.isEmpty()) {
+                log.warn("Skipped stats for {} uris on unavailable shards", unavailable.size());
+            }
+            return stats;
+        } catch (Exception e) {
+            log.error("Failed to get stats from stats service: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
 
-            String url = String.format("%s/stats?start=%s&end=%s&uris=%s&unique=false",
-                    statsServerUrl, encodedStart, encodedEnd, encodedUris);
+    // uri шардов с открытым брейкером или упавшим запросом попадают в unavailable и в результат не входят
+    private List<ViewStats> queryStats(List<String> uris, LocalDateTime start, boolean unique,
+                                       Set<String> unavailable) {
+        // хиты пишутся с точностью до секунды, поэтому границы диапазона тоже усекаем. Конец открытого
+        // диапазона округляется вверх до минуты: ключ кеша stats-server повторяется всю минуту, а хиты,
+        // пришедшие после запроса, попадают в запись кеша патчем - их timestamp не позже end
+        LocalDateTime rangeStart = start.truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime rangeEnd = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
 
-            log.info("Requesting stats from: {}", url);
+        // каждый шард получает только свои uri (и прежний владелец - пока идёт перебалансировка)
+        List<Map.Entry<String, List<String>>> chunks = new ArrayList<>();
+        shardRing.groupForRead(uris, uri -> uri).forEach((shard, shardUris) -> {
+            for (int i = 0; i < shardUris.size(); i += QUERY_CHUNK_SIZE) {
+                chunks.add(Map.entry(shard, shardUris.subList(i, Math.min(i + QUERY_CHUNK_SIZE, shardUris.size()))));
+            }
+        });
 
-            ViewStats[] response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(ViewStats[].class)
-                    .block();
+        // одна пара (app, uri) приходит от двух шардов только во время перебалансировки, хиты складываются
+        Map<List<String>, ViewStats> result = Flux.fromIterable(chunks)
+                .flatMap(chunk -> queryShard(chunk.getKey(), chunk.getValue(), StatsQuery.builder()
+                        .start(rangeStart)
+                        .end(rangeEnd)
+                        .uris(chunk.getValue())
+                        .unique(unique)
+                        .build(), unavailable), QUERY_PARALLELISM)
+                .flatMapIterable(stats -> stats)
+                .collect(LinkedHashMap<List<String>, ViewStats>::new, StatsServiceImpl::mergeStats)
+                .block(httpClientProperties.getReadTimeout());
+        if (result == null) {
+            return Collections.emptyList();
+        }
+
+        // при перебалансировке uri читается с двух шардов: половинная сумма хуже, чем никакой
+        return result.values().stream()
+                .filter(stats -> !unavailable.contains(stats.getUri()))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private Mono<List<ViewStats>> queryShard(String shard, List<String> uris, StatsQuery query,
+                                             Set<String> unavailable) {
+        StatsCircuitBreaker circuitBreaker = circuitBreakers.forShard(shard);
+        if (!circuitBreaker.allowRequest()) {
+            unavailable.addAll(uris);
+            return Mono.just(List.of());
+        }
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return hedged(shard, query)
+                    .doOnSuccess(stats -> circuitBreaker.onSuccess(System.nanoTime() - started))
+                    .onErrorResume(e -> {
+                        circuitBreaker.onFailure(System.nanoTime() - started);
+                        log.warn("Failed to get stats from {}: {}", shard, e.getMessage());
+                        unavailable.addAll(uris);
+                        return Mono.just(List.of());
+                    });
+        });
+    }
+
+    private Mono<List<ViewStats>> hedged(String shard, StatsQuery query) {
+        StatsCircuitBreaker circuitBreaker = circuitBreakers.forShard(shard);
+        // отменённый хеджем запрос тоже учитывается: он шёл не меньше задержки хеджирования
+        Mono<List<ViewStats>> primary = Mono.defer(() -> {
+            long started = System.nanoTime();
+            return postQuery(shard, query)
+                    .doFinally(signal -> {
+                        if (signal != SignalType.ON_ERROR) {
+                            circuitBreaker.onChunk(System.nanoTime() - started);
+                        }
+                    });
+        });
+        // реплика есть только у одиночного сервера
+        if (hedgeServerUrl == null || hedgeServerUrl.isBlank() || shardRing.isSharded()) {
+            return primary;
+        }
 
-            return response != null ? Arrays.asList(response) : Collections.emptyList();
+        // если основной запрос не уложился в p95, дублируем его на реплику и берём первый ответ
+        Mono<List<ViewStats>> hedge = Mono.delay(circuitBreaker.hedgeDelay())
+                .then(postQuery(hedgeServerUrl, query));
+        return Mono.firstWithValue(primary, hedge);
+    }
+
+    private Mono<List<ViewStats>> postQuery(String baseUrl, StatsQuery query) {
+        return webClient.post()
+                .uri(baseUrl + "/stats/query")
+                .contentType(wireFormat())
+                .accept(wireFormat())
+                .bodyValue(query)
+                .retrieve()
+                .bodyToFlux(ViewStats.class)
+                .collectList();
+    }
 
+    @Override
+    public List<Long> getTrendingEventIds(TopWindow window, Integer limit) {
+        List<Long> eventIds = new ArrayList<>();
+        try {
+            // stats-server отдаёт только uri /events/... этого приложения; запас нужен на /events/trending
+            // и подобные uri без id, а также на неопубликованные события, которые отсеет EventServiceImpl.
+            // uri живёт на одном шарде, поэтому слитые top-k шардов дают точный общий top-k,
+            // а без недоступного шарда - top-k остальных
+            int k = limit * 2 + TRENDING_MARGIN;
+            Map<List<String>, ViewStats> response = Flux.fromIterable(shardRing.allShards())
+                    .flatMap(shard -> topOfShard(shard, window, k))
+                    .collect(LinkedHashMap<List<String>, ViewStats>::new, StatsServiceImpl::mergeStats)
+                    .block(httpClientProperties.getReadTimeout());
+
+            if (response != null) {
+                List<ViewStats> top = new ArrayList<>(response.values());
+                top.sort(Comparator.comparing(ViewStats::getHits).reversed());
+                for (ViewStats stats : top) {
+                    Long eventId = extractEventIdFromUri(stats.getUri());
+                    if (eventId != -1L && eventIds.size() < limit) {
+                        eventIds.add(eventId);
+                    }
+                }
+            }
         } catch (Exception e) {
-            log.error("Failed to get stats from stats service: {}", e.getMessage());
-            return Collections.emptyList();
+            log.error("Error getting trending events: {}", e.getMessage());
         }
+
+        return eventIds;
+    }
+
+    private Flux<ViewStats> topOfShard(String shard, TopWindow window, int k) {
+        StatsCircuitBreaker circuitBreaker = circuitBreakers.forShard(shard);
+        if (!circuitBreaker.allowRequest()) {
+            log.warn("Stats circuit breaker for {} is open, trending events exclude it", shard);
+            return Flux.empty();
+        }
+        return Flux.defer(() -> {
+            long started = System.nanoTime();
+            return webClient.get()
+                    .uri(shard + "/stats/top?app={app}&window={window}&k={k}&prefix={prefix}",
+                            APP, window.getCode(), k, EVENT_URI_PREFIX)
+                    .accept(wireFormat())
+                    .retrieve()
+                    .bodyToFlux(ViewStats.class)
+                    .collectList()
+                    .doOnSuccess(top -> circuitBreaker.onSuccess(System.nanoTime() - started))
+                    .onErrorResume(e -> {
+                        circuitBreaker.onFailure(System.nanoTime() - started);
+                        log.warn("Failed to get trending events from {}: {}", shard, e.getMessage());
+                        return Mono.just(List.of());
+                    })
+                    .flatMapIterable(top -> top);
+        });
     }
-}
\ No newline at end of file
+}
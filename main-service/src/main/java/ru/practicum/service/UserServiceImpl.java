@@ -1,6 +1,7 @@
 package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -23,6 +24,7 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final OutboxService outboxService;
 
     @Override
     @Transactional
@@ -54,10 +56,12 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = ReferenceDataService.USER_SHORTS_CACHE, key = "#userId")
     public void deleteUser(Long userId) {
         if (!userRepository.existsById(userId)) {
             throw new EntityNotFoundException("User with id=" + userId + " was not found");
         }
         userRepository.deleteById(userId);
+        outboxService.userChanged(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+CREATE TABLE IF NOT EXISTS users (
+    id    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name  VARCHAR(250) NOT NULL,
+    email VARCHAR(254) NOT NULL,
+    CONSTRAINT uq_users_email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS categories (
+    id   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255),
+    CONSTRAINT uq_categories_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS events (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    annotation         VARCHAR(2000) NOT NULL,
+    description        VARCHAR(7000) NOT NULL,
+    title              VARCHAR(120)  NOT NULL,
+    event_date         TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    created_on         TIMESTAMP WITHOUT TIME ZONE,
+    published_on       TIMESTAMP WITHOUT TIME ZONE,
+    paid               BOOLEAN NOT NULL,
+    participant_limit  INTEGER,
+    request_moderation BOOLEAN,
+    state              VARCHAR(255),
+    category_id        BIGINT NOT NULL REFERENCES categories (id),
+    initiator_id       BIGINT NOT NULL REFERENCES users (id),
+    lat                REAL,
+    lon                REAL
+);
+
+CREATE TABLE IF NOT EXISTS participation_requests (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    created_date TIMESTAMP WITHOUT TIME ZONE,
+    event_id     BIGINT NOT NULL REFERENCES events (id),
+    requester_id BIGINT NOT NULL REFERENCES users (id),
+    status       VARCHAR(255),
+    CONSTRAINT uq_participation_requests_event_requester UNIQUE (event_id, requester_id)
+);
+
+CREATE TABLE IF NOT EXISTS compilations (
+    id     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title  VARCHAR(50) NOT NULL,
+    pinned BOOLEAN
+);
+
+CREATE TABLE IF NOT EXISTS compilation_events (
+    compilation_id BIGINT NOT NULL REFERENCES compilations (id),
+    event_id       BIGINT NOT NULL REFERENCES events (id),
+    PRIMARY KEY (compilation_id, event_id)
+);
+
+-- подсчёт подтверждённых заявок и проверки лимита участников
+CREATE INDEX IF NOT EXISTS idx_participation_requests_event_status ON participation_requests (event_id, status);
+CREATE INDEX IF NOT EXISTS idx_participation_requests_requester ON participation_requests (requester_id);
+
+-- админский поиск по состоянию и датам, события пользователя, проверка непустой категории
+CREATE INDEX IF NOT EXISTS idx_events_state_event_date ON events (state, event_date);
+CREATE INDEX IF NOT EXISTS idx_events_initiator ON events (initiator_id);
+CREATE INDEX IF NOT EXISTS idx_events_category ON events (category_id);
+
+-- публичный каталог видит только опубликованные события
+CREATE INDEX IF NOT EXISTS idx_events_published_event_date ON events (event_date) WHERE state = 'PUBLISHED';
+CREATE INDEX IF NOT EXISTS idx_events_published_category ON events (category_id, event_date) WHERE state = 'PUBLISHED';
+
+-- обратный поиск подборок по событию
+CREATE INDEX IF NOT EXISTS idx_compilation_events_event ON compilation_events (event_id);
+CREATE INDEX IF NOT EXISTS idx_compilations_pinned ON compilations (pinned);
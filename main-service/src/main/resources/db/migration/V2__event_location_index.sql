@@ -0,0 +1,6 @@
+-- cube и earthdistance входят в contrib стандартного образа postgres, PostGIS не нужен
+CREATE EXTENSION IF NOT EXISTS cube;
+CREATE EXTENSION IF NOT EXISTS earthdistance;
+
+-- поиск по радиусу (earth_box @>) и сортировка от ближних к дальним (<->) в GET /events
+CREATE INDEX IF NOT EXISTS idx_events_location_earth ON events USING gist (ll_to_earth(lat, lon));
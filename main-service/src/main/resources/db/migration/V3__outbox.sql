@@ -0,0 +1,11 @@
+-- записи пишутся в одной транзакции с изменением и удаляются OutboxRelay после доставки
+CREATE TABLE IF NOT EXISTS outbox (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type         VARCHAR(32) NOT NULL,
+    aggregate_id BIGINT,
+    payload      TEXT,
+    created_at   TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- relay читает каждый канал по порядку id
+CREATE INDEX IF NOT EXISTS idx_outbox_type_id ON outbox (type, id);
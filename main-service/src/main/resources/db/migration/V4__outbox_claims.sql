@@ -0,0 +1,2 @@
+-- OutboxRelay захватывает пачку хитов до отправки и удаляет её после; истёкший захват подхватит другой проход
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMP WITHOUT TIME ZONE;
@@ -0,0 +1,97 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventViewCountersTest {
+    private static final Long EVENT_ID = 1L;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 10, 12, 0, 0);
+
+    private final EventViewCounters counters = counters(true);
+
+    @Test
+    void needsBaseBeforeCountingLocally() {
+        counters.record(EVENT_ID, "10.0.0.1");
+
+        assertThat(counters.get(EVENT_ID, START)).isNull();
+        assertThat(counters.reset(EVENT_ID, START, 10)).isEqualTo(10);
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(10);
+    }
+
+    @Test
+    void countsRepeatIpOnce() {
+        counters.reset(EVENT_ID, START, 10);
+
+        counters.record(EVENT_ID, "10.0.0.1");
+        counters.record(EVENT_ID, "10.0.0.1");
+        counters.record(EVENT_ID, "10.0.0.2");
+        counters.record(EVENT_ID, "10.0.0.1");
+
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(12);
+    }
+
+    // свежая база может не содержать ip из дельты или содержать их повторно - показанное значение не падает
+    @Test
+    void neverDecreasesAcrossReset() {
+        counters.reset(EVENT_ID, START, 10);
+        counters.record(EVENT_ID, "10.0.0.1");
+        counters.record(EVENT_ID, "10.0.0.2");
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(12);
+
+        assertThat(counters.reset(EVENT_ID, START, 11)).isEqualTo(12);
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(12);
+
+        // ip из истории после перечитывания базы не считаются заново
+        counters.record(EVENT_ID, "10.0.0.1");
+        counters.record(EVENT_ID, "10.0.0.2");
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(12);
+
+        counters.record(EVENT_ID, "10.0.0.3");
+        counters.record(EVENT_ID, "10.0.0.4");
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(13);
+
+        assertThat(counters.reset(EVENT_ID, START, 20)).isEqualTo(20);
+    }
+
+    @Test
+    void newStartResetsClamp() {
+        LocalDateTime republished = START.plusDays(1);
+        counters.reset(EVENT_ID, START, 10);
+        counters.record(EVENT_ID, "10.0.0.1");
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(11);
+
+        assertThat(counters.reset(EVENT_ID, republished, 3)).isEqualTo(3);
+        assertThat(counters.get(EVENT_ID, republished)).isEqualTo(3);
+        assertThat(counters.get(EVENT_ID, START)).isNull();
+    }
+
+    @Test
+    void keepsEventsApart() {
+        counters.reset(EVENT_ID, START, 10);
+        counters.reset(2L, START, 5);
+
+        counters.record(EVENT_ID, "10.0.0.1");
+        counters.record(2L, "10.0.0.1");
+
+        assertThat(counters.get(EVENT_ID, START)).isEqualTo(11);
+        assertThat(counters.get(2L, START)).isEqualTo(6);
+    }
+
+    @Test
+    void passesBaseThroughWhenDisabled() {
+        EventViewCounters disabled = counters(false);
+        disabled.reset(EVENT_ID, START, 10);
+        disabled.record(EVENT_ID, "10.0.0.1");
+
+        assertThat(disabled.get(EVENT_ID, START)).isNull();
+        assertThat(disabled.reset(EVENT_ID, START, 7)).isEqualTo(7);
+    }
+
+    private static EventViewCounters counters(boolean enabled) {
+        return new EventViewCounters(enabled, Duration.ofMinutes(1), 100, 100, 100);
+    }
+}
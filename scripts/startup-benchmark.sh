@@ -0,0 +1,23 @@
+#!/usr/bin/env bash
+# Время от пересоздания контейнера до status=UP в /actuator/health.
+# Пример: scripts/startup-benchmark.sh ewm-service http://localhost:8080/actuator/health 5 -f docker-compose.yml -f docker-compose.fast-start.yml
+set -euo pipefail
+
+service=${1:?service name}
+health_url=${2:?health url}
+runs=${3:-5}
+shift $(( $# >= 3 ? 3 : $# ))
+compose=(docker compose "$@")
+
+total=0
+for run in $(seq 1 "$runs"); do
+    started=$(date +%s%N)
+    "${compose[@]}" up -d --force-recreate --no-deps "$service" >/dev/null 2>&1
+    until curl -fs "$health_url" 2>/dev/null | grep -q '"status":"UP"'; do
+        sleep 0.05
+    done
+    elapsed=$(( ($(date +%s%N) - started) / 1000000 ))
+    total=$(( total + elapsed ))
+    echo "run $run: ${elapsed} ms"
+done
+echo "average: $(( total / runs )) ms"
@@ -0,0 +1,60 @@
+package ru.practicum.statsbench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.statsdto.DateTimeCodec;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * DateTimeCodec против прежнего пути через DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").
+ * Запуск: java -jar stats/stats-bench/target/benchmarks.jar -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeCodecBenchmark {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(DateTimeCodec.PATTERN);
+
+    private LocalDateTime dateTime;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        dateTime = LocalDateTime.of(2024, 7, 15, 13, 45, 9);
+        text = "2024-07-15 13:45:09";
+    }
+
+    @Benchmark
+    public String formatFormatter() {
+        return FORMATTER.format(dateTime);
+    }
+
+    @Benchmark
+    public String formatCodec() {
+        return DateTimeCodec.format(dateTime);
+    }
+
+    @Benchmark
+    public LocalDateTime parseFormatter() {
+        return LocalDateTime.parse(text, FORMATTER);
+    }
+
+    @Benchmark
+    public LocalDateTime parseCodec() {
+        return DateTimeCodec.parse(text);
+    }
+}
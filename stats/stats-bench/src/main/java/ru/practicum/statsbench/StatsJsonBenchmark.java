@@ -0,0 +1,124 @@
+package ru.practicum.statsbench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Полный путь Jackson для тел /hits и /stats: EndpointHit идёт через LocalDateTimeSerializer
+ * и LocalDateTimeDeserializer (строка в JSON, epoch-millis в Smile), ViewStats - ответ /stats.
+ * Пачка в 100 элементов - типичный размер сброса HitAggregator и чанка запроса.
+ * Запуск: java -jar stats/stats-bench/target/benchmarks.jar StatsJsonBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsJsonBenchmark {
+    private static final int BATCH = 100;
+    private static final TypeReference<List<EndpointHit>> HITS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<ViewStats>> STATS = new TypeReference<>() {
+    };
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper smile = new SmileMapper();
+
+    private List<EndpointHit> hits;
+    private List<ViewStats> stats;
+    private byte[] hitsJson;
+    private byte[] hitsSmile;
+    private byte[] statsJson;
+    private byte[] statsSmile;
+
+    @Setup
+    public void setUp() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2024, 7, 15, 13, 45, 9);
+        hits = new ArrayList<>(BATCH);
+        stats = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            hits.add(EndpointHit.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + (1000 + i))
+                    .ip("192.168." + (i / 256) + "." + (i % 256))
+                    .timestamp(start.plusSeconds(i))
+                    .count(i % 3 == 0 ? 2L : null)
+                    .build());
+            stats.add(ViewStats.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + (1000 + i))
+                    .hits(10_000L - i)
+                    .build());
+        }
+        hitsJson = json.writeValueAsBytes(hits);
+        hitsSmile = smile.writeValueAsBytes(hits);
+        statsJson = json.writeValueAsBytes(stats);
+        statsSmile = smile.writeValueAsBytes(stats);
+
+        // бенчмарк неисправного сериализатора ничего не стоит
+        if (!hits.equals(json.readValue(hitsJson, HITS)) || !hits.equals(smile.readValue(hitsSmile, HITS))
+                || !stats.equals(json.readValue(statsJson, STATS)) || !stats.equals(smile.readValue(statsSmile, STATS))) {
+            throw new IllegalStateException("Round trip changed the payload");
+        }
+    }
+
+    @Benchmark
+    public byte[] writeHitsJson() throws IOException {
+        return json.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public List<EndpointHit> readHitsJson() throws IOException {
+        return json.readValue(hitsJson, HITS);
+    }
+
+    @Benchmark
+    public byte[] writeHitsSmile() throws IOException {
+        return smile.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public List<EndpointHit> readHitsSmile() throws IOException {
+        return smile.readValue(hitsSmile, HITS);
+    }
+
+    @Benchmark
+    public byte[] writeStatsJson() throws IOException {
+        return json.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public List<ViewStats> readStatsJson() throws IOException {
+        return json.readValue(statsJson, STATS);
+    }
+
+    @Benchmark
+    public byte[] writeStatsSmile() throws IOException {
+        return smile.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public List<ViewStats> readStatsSmile() throws IOException {
+        return smile.readValue(statsSmile, STATS);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.practicum.statsclient;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.statsdto.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/*
+ * Склеивает одинаковые хиты (app, uri, ip, секунда) в один с count и отправляет их пачкой.
+ * merge в ConcurrentHashMap блокирует только корзину ключа, а remove при сбросе атомарен:
+ * хит, пришедший после remove, создаст ключ заново и уйдёт со следующей пачкой.
+ */
+@Slf4j
+public class HitAggregator implements AutoCloseable {
+    private final Map<HitKey, Long> pending = new ConcurrentHashMap<>();
+    private final Consumer<List<EndpointHit>> sender;
+    private final ScheduledExecutorService flusher;
+
+    public HitAggregator(Consumer<List<EndpointHit>> sender, Duration flushInterval) {
+        this.sender = sender;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-hit-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(EndpointHit hit) {
+        HitKey key = new HitKey(hit.getApp(), hit.getUri(), hit.getIp(),
+                hit.getTimestamp().truncatedTo(ChronoUnit.SECONDS));
+        pending.merge(key, hit.weight(), Long::sum);
+    }
+
+    public void flush() {
+        flush(uri -> true);
+    }
+
+    // сброс только части uri - перед чтением статистики по ним, чтобы не ждать планового сброса
+    public void flush(Predicate<String> uriFilter) {
+        List<EndpointHit> batch = drain(uriFilter);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sender.accept(batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to send {} aggregated hits: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private List<EndpointHit> drain(Predicate<String> uriFilter) {
+        List<EndpointHit> batch = new ArrayList<>();
+        for (HitKey key : pending.keySet()) {
+            if (!uriFilter.test(key.uri())) {
+                continue;
+            }
+            Long count = pending.remove(key);
+            if (count != null) {
+                batch.add(EndpointHit.builder()
+                        .app(key.app())
+                        .uri(key.uri())
+                        .ip(key.ip())
+                        .timestamp(key.timestamp())
+                        .count(count)
+                        .build());
+            }
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private record HitKey(String app, String uri, String ip, LocalDateTime timestamp) {
+    }
+}
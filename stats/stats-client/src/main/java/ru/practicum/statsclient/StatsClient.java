@@ -2,35 +2,64 @@ package ru.practicum.statsclient;
 
 import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
+import ru.practicum.statsdto.DateTimeCodec;
 import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.StatsQuery;
 import ru.practicum.statsdto.ViewStats;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
-public class StatsClient {
+public class StatsClient implements AutoCloseable {
+    private static final int QUERY_CHUNK_SIZE = 200;
+
+    private final ExecutorService queryExecutor = Executors.newVirtualThreadPerTaskExecutor();
     private final RestTemplate restTemplate;
-    private final String serverUrl;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final StatsShardRing shardRing;
+    private final HitAggregator hitAggregator;
+    private final MediaType mediaType;
+
+    public StatsClient(String serverUrl, RestTemplate restTemplate) {
+        this(StatsShardRing.single(serverUrl), restTemplate, null, StatsWireFormat.JSON);
+    }
 
-    public StatsClient(String serverUrl) {
-        this.restTemplate = new RestTemplate();
-        this.serverUrl = serverUrl;
+    // с flushInterval хиты не отправляются сразу, а склеиваются и уходят пачкой на /hits
+    public StatsClient(StatsShardRing shardRing, RestTemplate restTemplate, Duration flushInterval,
+                       StatsWireFormat wireFormat) {
+        this.restTemplate = restTemplate;
+        this.shardRing = shardRing;
+        this.hitAggregator = flushInterval != null ? new HitAggregator(this::saveHits, flushInterval) : null;
+        this.mediaType = wireFormat.mediaType();
     }
 
     public void saveHit(EndpointHit endpointHit) {
+        if (hitAggregator != null) {
+            hitAggregator.add(endpointHit);
+            return;
+        }
+
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        headers.setContentType(mediaType);
+        headers.setAccept(List.of(mediaType));
 
         HttpEntity<EndpointHit> requestEntity = new HttpEntity<>(endpointHit, headers);
 
         ResponseEntity<Object> response = restTemplate.exchange(
-                serverUrl + "/hit",
+                shardRing.shardFor(endpointHit.getUri()) + "/hit",
                 HttpMethod.POST,
                 requestEntity,
                 Object.class
@@ -41,26 +70,180 @@ public class StatsClient {
         }
     }
 
+    public void saveHits(List<EndpointHit> endpointHits) {
+        shardRing.groupForWrite(endpointHits, EndpointHit::getUri).forEach(this::saveHits);
+    }
+
+    private void saveHits(String shard, List<EndpointHit> endpointHits) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+
+        ResponseEntity<Void> response = restTemplate.exchange(
+                shard + "/hits",
+                HttpMethod.POST,
+                new HttpEntity<>(endpointHits, headers),
+                Void.class
+        );
+
+        if (response.getStatusCode() != HttpStatus.CREATED) {
+            throw new RuntimeException("Failed to save hits. Status: " + response.getStatusCode());
+        }
+    }
+
     public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end,
                                     List<String> uris, Boolean unique) {
+        flushHits(uris);
+        Map<String, List<String>> urisByShard = new LinkedHashMap<>();
+        if (uris == null || uris.isEmpty()) {
+            shardRing.allShards().forEach(shard -> urisByShard.put(shard, null));
+        } else {
+            urisByShard.putAll(shardRing.groupForRead(uris, uri -> uri));
+        }
+
+        List<Supplier<List<ViewStats>>> requests = new ArrayList<>();
+        urisByShard.forEach((shard, shardUris) -> requests.add(() -> getStats(shard, start, end, shardUris, unique)));
+        return execute(requests);
+    }
+
+    private List<ViewStats> getStats(String shard, LocalDateTime start, LocalDateTime end,
+                                     List<String> uris, Boolean unique) {
         Map<String, Object> parameters = new HashMap<>();
-        parameters.put("start", start.format(formatter));
-        parameters.put("end", end.format(formatter));
+        parameters.put("start", DateTimeCodec.format(start));
+        parameters.put("end", DateTimeCodec.format(end));
         parameters.put("unique", unique);
 
-        String url = serverUrl + "/stats?start={start}&end={end}&unique={unique}";
+        String url = shard + "/stats?start={start}&end={end}&unique={unique}";
 
         if (uris != null && !uris.isEmpty()) {
             url += "&uris={uris}";
             parameters.put("uris", String.join(",", uris));
         }
 
-        ResponseEntity<ViewStats[]> response = restTemplate.getForEntity(
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(mediaType));
+
+        ResponseEntity<ViewStats[]> response = restTemplate.exchange(
                 url,
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
                 ViewStats[].class,
                 parameters
         );
 
         return Arrays.asList(response.getBody());
     }
+
+    public List<ViewStats> getStats(StatsQuery query) {
+        flushHits(query.getUris());
+        List<Supplier<List<ViewStats>>> requests = new ArrayList<>();
+        splitByShard(query).forEach((shard, shardQuery) -> {
+            for (StatsQuery chunk : splitQuery(shardQuery)) {
+                requests.add(() -> postQuery(shard, chunk));
+            }
+        });
+        return execute(requests);
+    }
+
+    @Override
+    public void close() {
+        if (hitAggregator != null) {
+            hitAggregator.close();
+        }
+    }
+
+    // свои же неотправленные хиты должны попасть в ответ
+    private void flushHits(List<String> uris) {
+        if (hitAggregator == null) {
+            return;
+        }
+        if (uris == null || uris.isEmpty()) {
+            hitAggregator.flush();
+        } else {
+            hitAggregator.flush(new HashSet<>(uris)::contains);
+        }
+    }
+
+    // запросы к шардам и чанкам идут параллельно; одна пара (app, uri) может прийти от двух шардов
+    // только во время перебалансировки, тогда её хиты складываются
+    private List<ViewStats> execute(List<Supplier<List<ViewStats>>> requests) {
+        if (requests.size() == 1) {
+            return requests.get(0).get();
+        }
+
+        List<CompletableFuture<List<ViewStats>>> futures = requests.stream()
+                .map(request -> CompletableFuture.supplyAsync(request, queryExecutor))
+                .toList();
+
+        Map<List<String>, ViewStats> merged = new LinkedHashMap<>();
+        futures.forEach(future -> future.join().forEach(stats -> merged.merge(
+                List.of(stats.getApp(), stats.getUri()), stats,
+                (a, b) -> ViewStats.builder().app(a.getApp()).uri(a.getUri()).hits(a.getHits() + b.getHits()).build())));
+
+        List<ViewStats> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    private Map<String, StatsQuery> splitByShard(StatsQuery query) {
+        Map<String, StatsQuery> queries = new LinkedHashMap<>();
+        boolean hasUris = query.getUris() != null && !query.getUris().isEmpty();
+        boolean hasEventIds = query.getEventIds() != null && !query.getEventIds().isEmpty();
+        if (!hasUris && !hasEventIds) {
+            shardRing.allShards().forEach(shard -> queries.put(shard, query));
+            return queries;
+        }
+
+        Map<String, List<String>> urisByShard = hasUris
+                ? shardRing.groupForRead(query.getUris(), uri -> uri) : Map.of();
+        Map<String, List<Long>> eventIdsByShard = hasEventIds
+                ? shardRing.groupForRead(query.getEventIds(), eventId -> "/events/" + eventId) : Map.of();
+
+        Set<String> shards = new LinkedHashSet<>(urisByShard.keySet());
+        shards.addAll(eventIdsByShard.keySet());
+        for (String shard : shards) {
+            queries.put(shard, chunkOf(query, urisByShard.get(shard), eventIdsByShard.get(shard)));
+        }
+        return queries;
+    }
+
+    private List<ViewStats> postQuery(String shard, StatsQuery query) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+        headers.setAccept(List.of(mediaType));
+
+        ResponseEntity<ViewStats[]> response = restTemplate.postForEntity(
+                shard + "/stats/query",
+                new HttpEntity<>(query, headers),
+                ViewStats[].class
+        );
+
+        return response.getBody() != null ? Arrays.asList(response.getBody()) : List.of();
+    }
+
+    private List<StatsQuery> splitQuery(StatsQuery query) {
+        List<String> uris = query.getUris() != null ? query.getUris() : List.of();
+        List<Long> eventIds = query.getEventIds() != null ? query.getEventIds() : List.of();
+        if (uris.size() + eventIds.size() <= QUERY_CHUNK_SIZE) {
+            return List.of(query);
+        }
+
+        List<StatsQuery> chunks = new ArrayList<>();
+        for (int i = 0; i < uris.size(); i += QUERY_CHUNK_SIZE) {
+            chunks.add(chunkOf(query, uris.subList(i, Math.min(i + QUERY_CHUNK_SIZE, uris.size())), null));
+        }
+        for (int i = 0; i < eventIds.size(); i += QUERY_CHUNK_SIZE) {
+            chunks.add(chunkOf(query, null, eventIds.subList(i, Math.min(i + QUERY_CHUNK_SIZE, eventIds.size()))));
+        }
+        return chunks;
+    }
+
+    private StatsQuery chunkOf(StatsQuery query, List<String> uris, List<Long> eventIds) {
+        return StatsQuery.builder()
+                .start(query.getStart())
+                .end(query.getEnd())
+                .uris(uris != null ? new ArrayList<>(uris) : null)
+                .eventIds(eventIds != null ? new ArrayList<>(eventIds) : null)
+                .unique(query.getUnique())
+                .build();
+    }
 }
\ No newline at end of file
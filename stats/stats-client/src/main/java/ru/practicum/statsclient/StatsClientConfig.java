@@ -1,17 +1,185 @@
 package ru.practicum.statsclient;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 @Configuration
+@EnableConfigurationProperties({StatsHttpClientProperties.class, StatsHitProperties.class, StatsShardProperties.class})
 public class StatsClientConfig {
 
     @Value("${stats-server.url:http://localhost:9090}")
     private String serverUrl;
 
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager statsConnectionManager(StatsHttpClientProperties properties,
+                                                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeout().toMillis()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(properties.getReadTimeout().toMillis()))
+                        .build())
+                .build();
+
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("stats.client.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                    .register(registry);
+            Gauge.builder("stats.client.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                    .register(registry);
+            Gauge.builder("stats.client.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                    .register(registry);
+        });
+        return connectionManager;
+    }
+
+    @Bean
+    public StatsShardRing statsShardRing(StatsShardProperties properties) {
+        if (properties.getShards().isEmpty()) {
+            return StatsShardRing.single(serverUrl);
+        }
+        return new StatsShardRing(properties.getShards(), properties.getPreviousShards(),
+                properties.getVirtualNodes());
+    }
+
     @Bean
-    public StatsClient statsClient() {
-        return new StatsClient(serverUrl);
+    public StatsClient statsClient(StatsHttpClientProperties properties,
+                                   StatsHitProperties hitProperties,
+                                   StatsShardRing statsShardRing,
+                                   PoolingHttpClientConnectionManager statsConnectionManager) {
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(statsConnectionManager)
+                .setConnectionManagerShared(true)
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.getMaxIdleTime().toMillis()))
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(
+                                Timeout.ofMilliseconds(properties.getPendingAcquireTimeout().toMillis()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(properties.getReadTimeout().toMillis()))
+                        .build())
+                .build();
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        long maxResponseSize = properties.getMaxResponseSize().toBytes();
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            var response = execution.execute(request, body);
+            if (response.getHeaders().getContentLength() > maxResponseSize) {
+                response.close();
+                throw new RestClientException("Stats server response exceeds " + maxResponseSize + " bytes");
+            }
+            // у chunked-ответа Content-Length нет: лимит проверяется по мере чтения тела
+            return new LimitedResponse(response, maxResponseSize);
+        });
+
+        return new StatsClient(statsShardRing, restTemplate,
+                hitProperties.isAggregate() ? hitProperties.getFlushInterval() : null, properties.getWireFormat());
+    }
+
+    private static class LimitedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final long maxSize;
+        private InputStream body;
+
+        LimitedResponse(ClientHttpResponse response, long maxSize) {
+            this.response = response;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new LimitedInputStream(response.getBody(), maxSize);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long maxSize;
+        private long count;
+
+        LimitedInputStream(InputStream in, long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long read) throws IOException {
+            count += read;
+            if (count > maxSize) {
+                throw new IOException("Stats server response exceeds " + maxSize + " bytes");
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package ru.practicum.statsclient;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats-server.hits")
+public class StatsHitProperties {
+    private boolean aggregate = true;
+    private Duration flushInterval = Duration.ofSeconds(1);
+}
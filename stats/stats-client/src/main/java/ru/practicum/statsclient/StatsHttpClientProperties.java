@@ -0,0 +1,22 @@
+package ru.practicum.statsclient;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats-server.http")
+public class StatsHttpClientProperties {
+    private int maxConnections = 50;
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(5);
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+    private DataSize maxResponseSize = DataSize.ofMegabytes(2);
+    private boolean h2c = false;
+    private StatsWireFormat wireFormat = StatsWireFormat.SMILE;
+}
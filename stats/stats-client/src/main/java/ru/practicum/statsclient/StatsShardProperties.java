@@ -0,0 +1,20 @@
+package ru.practicum.statsclient;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats-server.sharding")
+public class StatsShardProperties {
+    // пусто - один сервер stats-server.url
+    private List<String> shards = new ArrayList<>();
+    // состав кольца до последнего изменения; пока задан, чтение идёт и к прежним владельцам uri.
+    // Отличается от shards только добавлением или только удалением шардов, см. StatsShardRing
+    private List<String> previousShards = new ArrayList<>();
+    private int virtualNodes = 128;
+}
@@ -0,0 +1,115 @@
+package ru.practicum.statsclient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/*
+ * Консистентное хеширование uri по шардам stats-server (шард = базовый url), с виртуальными узлами.
+ * При добавлении или удалении шарда переезжает только ~1/N uri. Хиты пишутся текущему владельцу,
+ * а чтение, пока задано прежнее кольцо, идёт к обоим владельцам и суммируется: старые хиты остаются
+ * на прежнем шарде, и перебалансировка не требует ни остановки, ни переноса данных.
+ *
+ * Цена отказа от переноса: пока читаются оба кольца, unique по переехавшему uri завышен - ip, заходивший
+ * и до, и после переключения, есть на обоих шардах. Прежнее кольцо поддерживается только одно, поэтому
+ * previousShards должен отличаться от shards одним шагом: только добавлением или только удалением шардов.
+ * Следующую перебалансировку можно начинать, когда previousShards очищен.
+ */
+public final class StatsShardRing {
+    private final NavigableMap<Long, String> ring;
+    private final NavigableMap<Long, String> previousRing;
+    private final List<String> shards;
+
+    public StatsShardRing(List<String> shards, List<String> previousShards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one stats shard is required");
+        }
+        if (!previousShards.isEmpty() && !shards.containsAll(previousShards) && !previousShards.containsAll(shards)) {
+            throw new IllegalArgumentException("Previous stats shards " + previousShards + " and shards " + shards
+                    + " differ by both added and removed shards: finish one rebalancing before starting the next");
+        }
+        this.ring = buildRing(shards, virtualNodes);
+        this.previousRing = previousShards.isEmpty() ? null : buildRing(previousShards, virtualNodes);
+
+        Set<String> all = new LinkedHashSet<>(shards);
+        all.addAll(previousShards);
+        this.shards = List.copyOf(all);
+    }
+
+    public static StatsShardRing single(String serverUrl) {
+        return new StatsShardRing(List.of(serverUrl), List.of(), 1);
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    // все шарды, включая прежние, - для запросов без списка uri
+    public List<String> allShards() {
+        return shards;
+    }
+
+    public String shardFor(String uri) {
+        return ownerOf(ring, uri);
+    }
+
+    public <T> Map<String, List<T>> groupForWrite(Collection<T> items, Function<T, String> uriOf) {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(shardFor(uriOf.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    public <T> Map<String, List<T>> groupForRead(Collection<T> items, Function<T, String> uriOf) {
+        Map<String, List<T>> groups = groupForWrite(items, uriOf);
+        if (previousRing == null) {
+            return groups;
+        }
+        for (T item : items) {
+            String uri = uriOf.apply(item);
+            String previous = ownerOf(previousRing, uri);
+            if (!previous.equals(shardFor(uri))) {
+                groups.computeIfAbsent(previous, shard -> new ArrayList<>()).add(item);
+            }
+        }
+        return groups;
+    }
+
+    private static NavigableMap<Long, String> buildRing(List<String> shards, int virtualNodes) {
+        NavigableMap<Long, String> ring = new TreeMap<>();
+        for (String shard : shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+        return ring;
+    }
+
+    private static String ownerOf(NavigableMap<Long, String> ring, String uri) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(uri));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    // FNV-1a с финальным перемешиванием fmix64 из MurmurHash3: у коротких похожих uri иначе близкие хеши
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
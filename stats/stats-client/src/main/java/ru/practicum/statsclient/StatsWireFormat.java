@@ -0,0 +1,19 @@
+package ru.practicum.statsclient;
+
+import org.springframework.http.MediaType;
+
+public enum StatsWireFormat {
+    JSON(MediaType.APPLICATION_JSON),
+    // бинарный JSON от Jackson; время передаётся числом (epoch millis), см. LocalDateTimeSerializer
+    SMILE(new MediaType("application", "x-jackson-smile"));
+
+    private final MediaType mediaType;
+
+    StatsWireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+}
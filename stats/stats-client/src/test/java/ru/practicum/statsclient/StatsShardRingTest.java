@@ -0,0 +1,103 @@
+package ru.practicum.statsclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsShardRingTest {
+    private static final String A = "http://stats-a:9090";
+    private static final String B = "http://stats-b:9090";
+    private static final String C = "http://stats-c:9090";
+    private static final String D = "http://stats-d:9090";
+    private static final int VIRTUAL_NODES = 128;
+    private static final List<String> URIS = IntStream.range(0, 10_000).mapToObj(i -> "/events/" + i).toList();
+
+    @Test
+    void assignsSameOwnerRegardlessOfShardOrder() {
+        StatsShardRing ring = new StatsShardRing(List.of(A, B, C), List.of(), VIRTUAL_NODES);
+        StatsShardRing reordered = new StatsShardRing(List.of(C, A, B), List.of(), VIRTUAL_NODES);
+
+        for (String uri : URIS) {
+            assertThat(reordered.shardFor(uri)).isEqualTo(ring.shardFor(uri));
+        }
+        assertThat(URIS.stream().map(ring::shardFor).distinct()).containsExactlyInAnyOrder(A, B, C);
+    }
+
+    // добавленный шард забирает около 1/N uri, и только себе
+    @Test
+    void movesOnlyUrisTakenByAddedShard() {
+        StatsShardRing before = new StatsShardRing(List.of(A, B, C), List.of(), VIRTUAL_NODES);
+        StatsShardRing after = new StatsShardRing(List.of(A, B, C, D), List.of(A, B, C), VIRTUAL_NODES);
+
+        List<String> moved = movedUris(before, after);
+        assertThat(moved).allMatch(uri -> after.shardFor(uri).equals(D));
+        assertThat((double) moved.size() / URIS.size()).isBetween(0.15, 0.35);
+    }
+
+    @Test
+    void movesOnlyUrisOfRemovedShard() {
+        StatsShardRing before = new StatsShardRing(List.of(A, B, C, D), List.of(), VIRTUAL_NODES);
+        StatsShardRing after = new StatsShardRing(List.of(A, B, C), List.of(A, B, C, D), VIRTUAL_NODES);
+
+        assertThat(movedUris(before, after)).allMatch(uri -> before.shardFor(uri).equals(D));
+    }
+
+    @Test
+    void readsOnlyOwnerWithoutPreviousRing() {
+        StatsShardRing ring = new StatsShardRing(List.of(A, B, C), List.of(), VIRTUAL_NODES);
+
+        assertThat(ring.groupForRead(URIS, Function.identity()))
+                .isEqualTo(ring.groupForWrite(URIS, Function.identity()));
+        assertThat(ring.allShards()).containsExactly(A, B, C);
+    }
+
+    // переехавший uri читается с нового и прежнего владельца, остальные - только с владельца
+    @Test
+    void readsMovedUrisFromBothOwners() {
+        StatsShardRing before = new StatsShardRing(List.of(A, B, C), List.of(), VIRTUAL_NODES);
+        StatsShardRing after = new StatsShardRing(List.of(A, B, C, D), List.of(A, B, C), VIRTUAL_NODES);
+
+        Map<String, List<String>> reads = after.groupForRead(URIS, Function.identity());
+        Map<String, List<String>> writes = after.groupForWrite(URIS, Function.identity());
+        for (String uri : URIS) {
+            List<String> shards = reads.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(uri))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            if (before.shardFor(uri).equals(after.shardFor(uri))) {
+                assertThat(shards).as(uri).containsExactly(after.shardFor(uri));
+            } else {
+                assertThat(shards).as(uri).containsExactlyInAnyOrder(D, before.shardFor(uri));
+            }
+        }
+        assertThat(writes).containsOnlyKeys(A, B, C, D);
+        assertThat(after.allShards()).containsExactlyInAnyOrder(A, B, C, D);
+        assertThat(after.isSharded()).isTrue();
+    }
+
+    @Test
+    void rejectsPreviousRingMoreThanOneStepAway() {
+        assertThatThrownBy(() -> new StatsShardRing(List.of(A, B, D), List.of(A, B, C), VIRTUAL_NODES))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("finish one rebalancing");
+        assertThatThrownBy(() -> new StatsShardRing(List.of(), List.of(), VIRTUAL_NODES))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> movedUris(StatsShardRing before, StatsShardRing after) {
+        List<String> moved = new ArrayList<>();
+        for (String uri : URIS) {
+            if (!before.shardFor(uri).equals(after.shardFor(uri))) {
+                moved.add(uri);
+            }
+        }
+        return moved;
+    }
+}
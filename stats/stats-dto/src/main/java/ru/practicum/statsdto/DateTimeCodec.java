@@ -0,0 +1,100 @@
+package ru.practicum.statsdto;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Кодек для единственного формата проекта "yyyy-MM-dd HH:mm:ss" без DateTimeFormatter и промежуточных объектов.
+ */
+public final class DateTimeCodec {
+    public static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+    public static final int LENGTH = 19;
+
+    private DateTimeCodec() {
+    }
+
+    public static String format(LocalDateTime dateTime) {
+        char[] buffer = new char[LENGTH];
+        write(dateTime, buffer, 0);
+        return new String(buffer);
+    }
+
+    public static void write(LocalDateTime dateTime, char[] buffer, int offset) {
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            throw new DateTimeException("Year out of range for " + PATTERN + ": " + year);
+        }
+        writeDigits(buffer, offset, year / 100);
+        writeDigits(buffer, offset + 2, year % 100);
+        buffer[offset + 4] = '-';
+        writeDigits(buffer, offset + 5, dateTime.getMonthValue());
+        buffer[offset + 7] = '-';
+        writeDigits(buffer, offset + 8, dateTime.getDayOfMonth());
+        buffer[offset + 10] = ' ';
+        writeDigits(buffer, offset + 11, dateTime.getHour());
+        buffer[offset + 13] = ':';
+        writeDigits(buffer, offset + 14, dateTime.getMinute());
+        buffer[offset + 16] = ':';
+        writeDigits(buffer, offset + 17, dateTime.getSecond());
+    }
+
+    public static LocalDateTime parse(CharSequence text) {
+        if (text == null || text.length() != LENGTH) {
+            throw new DateTimeParseException("Text must match " + PATTERN, String.valueOf(text), 0);
+        }
+        char[] buffer = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            buffer[i] = text.charAt(i);
+        }
+        return parse(buffer, 0, LENGTH);
+    }
+
+    public static LocalDateTime parse(char[] buffer, int offset, int length) {
+        if (length != LENGTH
+                || buffer[offset + 4] != '-' || buffer[offset + 7] != '-' || buffer[offset + 10] != ' '
+                || buffer[offset + 13] != ':' || buffer[offset + 16] != ':') {
+            throw new DateTimeParseException("Text must match " + PATTERN,
+                    new String(buffer, offset, length), 0);
+        }
+        try {
+            return LocalDateTime.of(
+                    readDigits(buffer, offset, 4),
+                    readDigits(buffer, offset + 5, 2),
+                    readDigits(buffer, offset + 8, 2),
+                    readDigits(buffer, offset + 11, 2),
+                    readDigits(buffer, offset + 14, 2),
+                    readDigits(buffer, offset + 17, 2));
+        } catch (DateTimeException e) {
+            throw new DateTimeParseException(e.getMessage(), new String(buffer, offset, length), 0, e);
+        }
+    }
+
+    // для бинарных форматов: локальное время как есть, без сдвига зоны, просто в миллисекундах
+    public static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime fromEpochMilli(long epochMilli) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000),
+                (int) Math.floorMod(epochMilli, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private static void writeDigits(char[] buffer, int offset, int value) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private static int readDigits(char[] buffer, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new DateTimeException("Unexpected character '" + buffer[i] + "' at index " + i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
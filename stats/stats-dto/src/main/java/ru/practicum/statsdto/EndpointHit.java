@@ -1,8 +1,14 @@
 package ru.practicum.statsdto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,18 +21,37 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class EndpointHit {
+    // столько одинаковых хитов в секунду с одного ip уже не склейка, а ошибка клиента
+    public static final long MAX_COUNT = 100_000;
+
     private Long id;
 
+    // столбцы VARCHAR(255) в stats-server
     @NotBlank
+    @Size(max = 255)
     private String app;
 
     @NotBlank
+    @Size(max = 255)
     private String uri;
 
     @NotBlank
+    @Size(max = 255)
     private String ip;
 
     @NotNull
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     private LocalDateTime timestamp;
-}
\ No newline at end of file
+
+    // сколько одинаковых хитов (app, uri, ip, секунда) склеено в этот на стороне клиента; null - один
+    @Positive
+    @Max(MAX_COUNT)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long count;
+
+    @JsonIgnore
+    public long weight() {
+        return count != null ? count : 1;
+    }
+}
@@ -1,23 +1,32 @@
 package ru.practicum.statsdto;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 public class LocalDateTimeDeserializer extends JsonDeserializer<LocalDateTime> {
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     @Override
     public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        String dateString = p.getValueAsString();
         try {
-            return LocalDateTime.parse(dateString, FORMATTER);
+            if (p.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+                return DateTimeCodec.fromEpochMilli(p.getLongValue());
+            }
+            if (p.hasToken(JsonToken.VALUE_STRING)) {
+                return DateTimeCodec.parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            }
+            return DateTimeCodec.parse(p.getValueAsString());
         } catch (Exception e) {
-            throw new IOException("Failed to parse LocalDateTime from: " + dateString, e);
+            throw new IOException("Failed to parse LocalDateTime from: " + p.getValueAsString(), e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Class<?> handledType() {
+        return LocalDateTime.class;
+    }
+}
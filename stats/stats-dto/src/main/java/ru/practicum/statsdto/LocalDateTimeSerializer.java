@@ -0,0 +1,29 @@
+package ru.practicum.statsdto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+public class LocalDateTimeSerializer extends JsonSerializer<LocalDateTime> {
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[DateTimeCodec.LENGTH]);
+
+    @Override
+    public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        // Smile/CBOR: число вместо строки из 19 символов
+        if (gen.canWriteBinaryNatively()) {
+            gen.writeNumber(DateTimeCodec.toEpochMilli(value));
+            return;
+        }
+        char[] buffer = BUFFER.get();
+        DateTimeCodec.write(value, buffer, 0);
+        gen.writeString(buffer, 0, DateTimeCodec.LENGTH);
+    }
+
+    @Override
+    public Class<LocalDateTime> handledType() {
+        return LocalDateTime.class;
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.statsdto;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public enum TopWindow {
+    FIVE_MINUTES("5m", Duration.ofMinutes(5), Duration.ofMinutes(1)),
+    HOUR("1h", Duration.ofHours(1), Duration.ofMinutes(5)),
+    DAY("1d", Duration.ofDays(1), Duration.ofHours(1));
+
+    private final String code;
+    private final Duration length;
+    private final Duration bucket;
+
+    TopWindow(String code, Duration length, Duration bucket) {
+        this.code = code;
+        this.length = length;
+        this.bucket = bucket;
+    }
+
+    public int bucketCount() {
+        return (int) (length.toMillis() / bucket.toMillis());
+    }
+
+    public static TopWindow from(String value) {
+        for (TopWindow window : values()) {
+            if (window.code.equalsIgnoreCase(value) || window.name().equalsIgnoreCase(value)) {
+                return window;
+            }
+        }
+        throw new IllegalArgumentException("Unknown window: " + value + ". Use 5m, 1h or 1d");
+    }
+}
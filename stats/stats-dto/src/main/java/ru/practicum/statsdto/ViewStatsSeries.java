@@ -0,0 +1,19 @@
+package ru.practicum.statsdto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewStatsSeries {
+    private String app;
+    private String uri;
+    private String interval;
+    private List<ViewStatsPoint> points;
+}
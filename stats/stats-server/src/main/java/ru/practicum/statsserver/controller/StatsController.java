@@ -1,5 +1,6 @@
 package ru.practicum.statsserver.controller;
 
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -7,7 +8,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.StatsQuery;
+import ru.practicum.statsdto.TopWindow;
 import ru.practicum.statsdto.ViewStats;
+import ru.practicum.statsdto.ViewStatsSeries;
+import ru.practicum.statsserver.model.SeriesInterval;
 import ru.practicum.statsserver.service.StatsService;
 
 import java.time.LocalDateTime;
@@ -22,10 +27,16 @@ public class StatsController {
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
-    public void saveHit(@RequestBody EndpointHit endpointHit) {
+    public void saveHit(@Valid @RequestBody EndpointHit endpointHit) {
         statsService.saveHit(endpointHit);
     }
 
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHits(@RequestBody List<@Valid EndpointHit> endpointHits) {
+        statsService.saveHits(endpointHits);
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<?> getStats(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
@@ -56,4 +67,36 @@ public class StatsController {
                     .body(Map.of("error", "Internal server error"));
         }
     }
+
+    @PostMapping("/stats/query")
+    public List<ViewStats> queryStats(@Valid @RequestBody StatsQuery query) {
+        log.info("Stats query received: start={}, end={}, uris={}, eventIds={}, unique={}",
+                query.getStart(), query.getEnd(), sizeOf(query.getUris()), sizeOf(query.getEventIds()),
+                query.getUnique());
+        return statsService.getStats(query);
+    }
+
+    @GetMapping("/stats/timeseries")
+    public List<ViewStatsSeries> getTimeSeries(
+            @RequestParam String uri,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(defaultValue = "1h") String interval) {
+        log.info("Timeseries request received: uri={}, start={}, end={}, interval={}", uri, start, end, interval);
+        return statsService.getTimeSeries(uri, start, end, SeriesInterval.from(interval));
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStats> getTopUris(
+            @RequestParam(required = false) String app,
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(defaultValue = "10") Integer k,
+            @RequestParam(required = false) String prefix) {
+        log.info("Top request received: app={}, window={}, k={}, prefix={}", app, window, k, prefix);
+        return statsService.getTopUris(app, TopWindow.from(window), k, prefix);
+    }
+
+    private int sizeOf(List<?> values) {
+        return values != null ? values.size() : 0;
+    }
 }
\ No newline at end of file
@@ -2,9 +2,11 @@ package ru.practicum.statsserver.exception;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
 import java.time.format.DateTimeParseException;
 import java.util.Map;
@@ -24,6 +26,28 @@ public class ErrorHandler {
         );
     }
 
+    @ExceptionHandler({MethodArgumentNotValidException.class, HandlerMethodValidationException.class})
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleNotValid(Exception e) {
+        log.error("Validation error: {}", e.getMessage());
+        return Map.of(
+                "error", "Incorrectly made request.",
+                "message", e.getMessage(),
+                "status", "BAD_REQUEST"
+        );
+    }
+
+    @ExceptionHandler(IngestOverloadedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleIngestOverloaded(IngestOverloadedException e) {
+        log.warn("Hit rejected: {}", e.getMessage());
+        return Map.of(
+                "error", "Service is overloaded.",
+                "message", e.getMessage(),
+                "status", "SERVICE_UNAVAILABLE"
+        );
+    }
+
     @ExceptionHandler(DateTimeParseException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleDateTimeParse(DateTimeParseException e) {
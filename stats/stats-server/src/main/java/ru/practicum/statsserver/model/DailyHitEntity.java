@@ -0,0 +1,36 @@
+package ru.practicum.statsserver.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+// свёрнутые сырые хиты одного дня: сумма и HyperLogLog-скетч ip для unique
+@Entity
+@Table(name = "daily_hits", uniqueConstraints = @UniqueConstraint(columnNames = {"uri", "app", "day"}))
+@Getter
+@Setter
+@ToString(exclude = "visitors")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyHitEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String app;
+
+    @Column(nullable = false)
+    private String uri;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private Long hits;
+
+    @Column(nullable = false)
+    private byte[] visitors;
+}
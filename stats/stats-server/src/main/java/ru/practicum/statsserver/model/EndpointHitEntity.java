@@ -29,4 +29,9 @@ public class EndpointHitEntity {
 
     @Column(nullable = false)
     private LocalDateTime timestamp;
+
+    // склеенные клиентом одинаковые хиты одной секунды
+    @Column(nullable = false)
+    @Builder.Default
+    private Long hits = 1L;
 }
\ No newline at end of file
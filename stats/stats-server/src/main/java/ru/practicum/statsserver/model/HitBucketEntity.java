@@ -0,0 +1,40 @@
+package ru.practicum.statsserver.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// предагрегат хитов одного ip за корзину 1m / 1h / 1d: число строк корзины - уникальные посетители
+@Entity
+@Table(name = "hit_buckets", uniqueConstraints = @UniqueConstraint(
+        columnNames = {"granularity", "uri", "bucket", "app", "ip"}))
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HitBucketEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 2)
+    private String granularity;
+
+    @Column(nullable = false)
+    private String app;
+
+    @Column(nullable = false)
+    private String uri;
+
+    @Column(nullable = false)
+    private String ip;
+
+    @Column(nullable = false)
+    private LocalDateTime bucket;
+
+    @Column(nullable = false)
+    private Long hits;
+}
@@ -0,0 +1,40 @@
+package ru.practicum.statsserver.model;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+public enum SeriesInterval {
+    MINUTE("1m", ChronoUnit.MINUTES),
+    HOUR("1h", ChronoUnit.HOURS),
+    DAY("1d", ChronoUnit.DAYS);
+
+    private final String code;
+    private final ChronoUnit unit;
+
+    SeriesInterval(String code, ChronoUnit unit) {
+        this.code = code;
+        this.unit = unit;
+    }
+
+    public Duration getLength() {
+        return unit.getDuration();
+    }
+
+    // начало корзины, в которую попадает момент
+    public LocalDateTime truncate(LocalDateTime dateTime) {
+        return dateTime.truncatedTo(unit);
+    }
+
+    public static SeriesInterval from(String value) {
+        for (SeriesInterval interval : values()) {
+            if (interval.code.equalsIgnoreCase(value) || interval.name().equalsIgnoreCase(value)) {
+                return interval;
+            }
+        }
+        throw new IllegalArgumentException("Unknown interval: " + value + ". Use 1m, 1h or 1d");
+    }
+}
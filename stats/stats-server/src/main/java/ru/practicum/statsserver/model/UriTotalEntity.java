@@ -0,0 +1,39 @@
+package ru.practicum.statsserver.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// нарастающий итог по uri за всю историю: сумма хитов и число различных ip
+@Entity
+@Table(name = "uri_totals", uniqueConstraints = @UniqueConstraint(columnNames = {"uri", "app"}))
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UriTotalEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String app;
+
+    @Column(nullable = false)
+    private String uri;
+
+    @Column(name = "first_seen", nullable = false)
+    private LocalDateTime firstSeen;
+
+    @Column(name = "last_seen", nullable = false)
+    private LocalDateTime lastSeen;
+
+    @Column(nullable = false)
+    private Long hits;
+
+    @Column(nullable = false)
+    private Long visitors;
+}
@@ -0,0 +1,147 @@
+package ru.practicum.statsserver.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * Неизменяемый сегмент: заголовок (magic, version, rows, minTs, maxTs) и четыре int-колонки подряд:
+ * смещение времени от minTs в секундах (по возрастанию), id приложения, id uri, id ip.
+ */
+final class ColumnSegment {
+    private static final int MAGIC = 0x48495453;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8;
+
+    private final int rowCount;
+    private final long minTs;
+    private final long maxTs;
+    private final IntBuffer offsets;
+    private final IntBuffer apps;
+    private final IntBuffer uris;
+    private final IntBuffer ips;
+
+    private ColumnSegment(MappedByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Unsupported column segment format");
+        }
+        this.rowCount = buffer.getInt(8);
+        this.minTs = buffer.getLong(12);
+        this.maxTs = buffer.getLong(20);
+
+        int columnBytes = rowCount * Integer.BYTES;
+        this.offsets = buffer.slice(HEADER_BYTES, columnBytes).asIntBuffer();
+        this.apps = buffer.slice(HEADER_BYTES + columnBytes, columnBytes).asIntBuffer();
+        this.uris = buffer.slice(HEADER_BYTES + 2 * columnBytes, columnBytes).asIntBuffer();
+        this.ips = buffer.slice(HEADER_BYTES + 3 * columnBytes, columnBytes).asIntBuffer();
+    }
+
+    static ColumnSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ColumnSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // строки сортируются по времени, файл пишется во временный и атомарно переименовывается
+    static ColumnSegment write(Path path, long[] timestamps, int[] appIds, int[] uriIds, int[] ipIds,
+                               int count) throws IOException {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, timestamps[i]);
+            max = Math.max(max, timestamps[i]);
+        }
+        if (max - min > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Segment time span does not fit into int offsets");
+        }
+
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((timestamps[i] - min) << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int columnBytes = count * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * columnBytes);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(min).putLong(max);
+        for (long key : order) {
+            buffer.putInt((int) (key >>> 32));
+        }
+        for (long key : order) {
+            buffer.putInt(appIds[(int) key]);
+        }
+        for (long key : order) {
+            buffer.putInt(uriIds[(int) key]);
+        }
+        for (long key : order) {
+            buffer.putInt(ipIds[(int) key]);
+        }
+        buffer.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    boolean overlaps(long start, long end) {
+        return rowCount > 0 && maxTs >= start && minTs <= end;
+    }
+
+    // диапазон строк находится бинпоиском по отсортированной колонке времени, дальше - линейный проход по int-колонкам
+    void scan(long start, long end, BitSet uriFilter, HitAggregation aggregation) {
+        int from = lowerBound(start - minTs);
+        int to = lowerBound(end - minTs + 1);
+        if (uriFilter == null) {
+            for (int i = from; i < to; i++) {
+                aggregation.add(apps.get(i), uris.get(i), ips.get(i));
+            }
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int uri = uris.get(i);
+            if (uriFilter.get(uri)) {
+                aggregation.add(apps.get(i), uri, ips.get(i));
+            }
+        }
+    }
+
+    // то же для одного uri, но с временем строки - для корзин временного ряда
+    void scanSeries(long start, long end, int uri, SeriesAggregation aggregation) {
+        int from = lowerBound(start - minTs);
+        int to = lowerBound(end - minTs + 1);
+        for (int i = from; i < to; i++) {
+            if (uris.get(i) == uri) {
+                aggregation.add(apps.get(i), minTs + offsets.get(i), ips.get(i));
+            }
+        }
+    }
+
+    private int lowerBound(long offset) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets.get(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,427 @@
+package ru.practicum.statsserver.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+import ru.practicum.statsdto.ViewStatsSeries;
+import ru.practicum.statsserver.model.SeriesInterval;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/*
+ * Локальное append-only хранилище: app, uri и ip кодируются словарём в int, время - в секундах.
+ * Новые хиты копятся в активном сегменте (в памяти + active-N.log), заполненный сегмент сортируется
+ * по времени и сбрасывается в segment-N.col, который дальше читается только через mmap.
+ * Если segment-N.col уже есть, active-N.log остался от падения между записью сегмента и ротацией лога.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "stats.store.backend", havingValue = "columnar")
+public class ColumnarHitStore implements HitStore {
+    private static final int ROW_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    // строк из одной пачки saveAll: больше не держим в памяти активного сегмента за раз
+    private static final long MAX_BATCH_ROWS = 1 << 22;
+    private static final int ROWS_PER_WRITE = 4096;
+    private static final byte APP = 0;
+    private static final byte URI = 1;
+    private static final byte IP = 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Dictionary apps = new Dictionary();
+    private final Dictionary uris = new Dictionary();
+    private final Dictionary ips = new Dictionary();
+    private final List<ColumnSegment> segments = new CopyOnWriteArrayList<>();
+    private final FileChannel dictionaryLog;
+
+    private int segmentSeq;
+    private FileChannel activeLog;
+    private long[] activeTimestamps;
+    private int[] activeApps;
+    private int[] activeUris;
+    private int[] activeIps;
+    private int activeCount;
+
+    public ColumnarHitStore(@Value("${stats.store.columnar.path:data/columnar}") String path,
+                            @Value("${stats.store.columnar.segment-size:65536}") int segmentSize,
+                            @Value("${stats.store.columnar.fsync:true}") boolean fsync) {
+        this.directory = Path.of(path);
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.activeTimestamps = new long[segmentSize];
+        this.activeApps = new int[segmentSize];
+        this.activeUris = new int[segmentSize];
+        this.activeIps = new int[segmentSize];
+        try {
+            Files.createDirectories(directory);
+            this.dictionaryLog = openAppendable(directory.resolve("dictionary.log"));
+            loadDictionary();
+            loadSegments();
+            loadActive();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open columnar hit store at " + directory, e);
+        }
+        log.info("Columnar hit store opened: {} segments, {} active rows, {} uris", segments.size(), activeCount,
+                uris.size());
+    }
+
+    @Override
+    public void saveAll(List<EndpointHit> hits) {
+        lock.writeLock().lock();
+        int rollbackCount = activeCount;
+        int rollbackApps = apps.size();
+        int rollbackUris = uris.size();
+        int rollbackIps = ips.size();
+        long rollbackDictionary = 0;
+        long rollbackActive = 0;
+        try {
+            rollbackDictionary = dictionaryLog.position();
+            rollbackActive = activeLog.position();
+            // хит с count разворачивается в count строк: формат строки и сегмента не меняется
+            long rowCount = 0;
+            for (EndpointHit hit : hits) {
+                rowCount += HitStore.checkedWeight(hit);
+            }
+            if (rowCount > MAX_BATCH_ROWS) {
+                // HitIngestBuffer делит такую пачку пополам, пока части не поместятся
+                throw new IllegalArgumentException("Batch expands to " + rowCount + " rows, limit is " + MAX_BATCH_ROWS);
+            }
+            ensureActiveCapacity(activeCount + (int) rowCount);
+
+            // словарь пишется раньше строк, которые на него ссылаются
+            ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+            DataOutputStream dictionaryOutput = new DataOutputStream(dictionaryBytes);
+            int[] hitApps = new int[hits.size()];
+            int[] hitUris = new int[hits.size()];
+            int[] hitIps = new int[hits.size()];
+            for (int i = 0; i < hits.size(); i++) {
+                EndpointHit hit = hits.get(i);
+                hitApps[i] = apps.intern(hit.getApp(), APP, dictionaryOutput);
+                hitUris[i] = uris.intern(hit.getUri(), URI, dictionaryOutput);
+                hitIps[i] = ips.intern(hit.getIp(), IP, dictionaryOutput);
+            }
+            if (dictionaryBytes.size() > 0) {
+                write(dictionaryLog, ByteBuffer.wrap(dictionaryBytes.toByteArray()));
+            }
+
+            // строки уходят в лог кусками, чтобы большой count не требовал буфера на всю пачку
+            ByteBuffer rows = ByteBuffer.allocate((int) Math.min(rowCount, ROWS_PER_WRITE) * ROW_BYTES);
+            for (int i = 0; i < hits.size(); i++) {
+                long timestamp = toSeconds(hits.get(i).getTimestamp());
+                for (long n = hits.get(i).weight(); n > 0; n--) {
+                    activeApps[activeCount] = hitApps[i];
+                    activeUris[activeCount] = hitUris[i];
+                    activeIps[activeCount] = hitIps[i];
+                    activeTimestamps[activeCount] = timestamp;
+                    activeCount++;
+                    if (!rows.hasRemaining()) {
+                        write(activeLog, rows.flip());
+                        rows.clear();
+                    }
+                    rows.putInt(hitApps[i]).putInt(hitUris[i]).putInt(hitIps[i]).putLong(timestamp);
+                }
+            }
+            write(activeLog, rows.flip());
+            if (fsync) {
+                dictionaryLog.force(false);
+                activeLog.force(false);
+            }
+
+            if (activeCount >= segmentSize) {
+                sealActive();
+            }
+        } catch (IOException e) {
+            // откат, чтобы повтор пачки из HitIngestBuffer не дал дублей и не сдвинул id словаря
+            activeCount = rollbackCount;
+            apps.truncate(rollbackApps);
+            uris.truncate(rollbackUris);
+            ips.truncate(rollbackIps);
+            truncateQuietly(dictionaryLog, rollbackDictionary);
+            truncateQuietly(activeLog, rollbackActive);
+            throw new UncheckedIOException("Failed to append hits to columnar store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uriFilter, boolean unique) {
+        long from = toSeconds(start);
+        long to = toSeconds(end);
+
+        lock.readLock().lock();
+        try {
+            BitSet uriIds = null;
+            if (uriFilter != null && !uriFilter.isEmpty()) {
+                uriIds = new BitSet();
+                for (String uri : uriFilter) {
+                    int id = uris.idOf(uri);
+                    if (id >= 0) {
+                        uriIds.set(id);
+                    }
+                }
+                if (uriIds.isEmpty()) {
+                    return new ArrayList<>();
+                }
+            }
+
+            HitAggregation aggregation = new HitAggregation(unique);
+            for (ColumnSegment segment : segments) {
+                if (segment.overlaps(from, to)) {
+                    segment.scan(from, to, uriIds, aggregation);
+                }
+            }
+            for (int i = 0; i < activeCount; i++) {
+                long timestamp = activeTimestamps[i];
+                if (timestamp >= from && timestamp <= to && (uriIds == null || uriIds.get(activeUris[i]))) {
+                    aggregation.add(activeApps[i], activeUris[i], activeIps[i]);
+                }
+            }
+            return aggregation.toViewStats(apps.values, uris.values);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // отдельных предагрегатов нет: корзины считаются за один проход по отсортированным по времени сегментам
+    @Override
+    public List<ViewStatsSeries> getTimeSeries(String uri, LocalDateTime start, LocalDateTime end,
+                                               SeriesInterval interval) {
+        long from = toSeconds(start);
+        long to = toSeconds(end) + interval.getLength().toSeconds() - 1;
+
+        lock.readLock().lock();
+        try {
+            int uriId = uris.idOf(uri);
+            if (uriId < 0) {
+                return new ArrayList<>();
+            }
+
+            SeriesAggregation aggregation = new SeriesAggregation(interval.getLength().toSeconds());
+            for (ColumnSegment segment : segments) {
+                if (segment.overlaps(from, to)) {
+                    segment.scanSeries(from, to, uriId, aggregation);
+                }
+            }
+            for (int i = 0; i < activeCount; i++) {
+                long timestamp = activeTimestamps[i];
+                if (timestamp >= from && timestamp <= to && activeUris[i] == uriId) {
+                    aggregation.add(activeApps[i], timestamp, activeIps[i]);
+                }
+            }
+            return aggregation.toSeries(apps.values, uri, interval.getCode());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            dictionaryLog.close();
+            activeLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void sealActive() throws IOException {
+        ColumnSegment segment = ColumnSegment.write(segmentPath(segmentSeq), activeTimestamps, activeApps,
+                activeUris, activeIps, activeCount);
+        segments.add(segment);
+        log.info("Sealed column segment {} with {} rows", segmentSeq, activeCount);
+
+        Path sealedLog = activePath(segmentSeq);
+        activeLog.close();
+        segmentSeq++;
+        activeLog = openAppendable(activePath(segmentSeq));
+        Files.deleteIfExists(sealedLog);
+        activeCount = 0;
+        if (activeTimestamps.length > segmentSize) {
+            activeTimestamps = new long[segmentSize];
+            activeApps = new int[segmentSize];
+            activeUris = new int[segmentSize];
+            activeIps = new int[segmentSize];
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void ensureActiveCapacity(int required) {
+        if (required <= activeTimestamps.length) {
+            return;
+        }
+        int capacity = Math.max(required, activeTimestamps.length * 2);
+        activeTimestamps = Arrays.copyOf(activeTimestamps, capacity);
+        activeApps = Arrays.copyOf(activeApps, capacity);
+        activeUris = Arrays.copyOf(activeUris, capacity);
+        activeIps = Arrays.copyOf(activeIps, capacity);
+    }
+
+    private void loadDictionary() throws IOException {
+        dictionaryLog.position(0);
+        DataInputStream input = new DataInputStream(Channels.newInputStream(dictionaryLog));
+        long validLength = 0;
+        try {
+            while (true) {
+                byte kind = input.readByte();
+                String value = input.readUTF();
+                dictionaryFor(kind).add(value);
+                validLength = dictionaryLog.position();
+            }
+        } catch (EOFException e) {
+            log.debug("Loaded {} apps, {} uris, {} ips from dictionary", apps.size(), uris.size(), ips.size());
+        }
+        dictionaryLog.truncate(validLength);
+        dictionaryLog.position(validLength);
+    }
+
+    private void loadSegments() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(file -> file.getFileName().toString().matches("segment-\\d+\\.col"))
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            segments.add(ColumnSegment.open(file));
+        }
+        segmentSeq = files.size();
+    }
+
+    private void loadActive() throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            for (Path file : stream.toList()) {
+                String name = file.getFileName().toString();
+                if (name.matches("active-\\d+\\.log") && !file.equals(activePath(segmentSeq))) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        activeLog = openAppendable(activePath(segmentSeq));
+        long validLength = activeLog.size() - activeLog.size() % ROW_BYTES;
+        activeLog.truncate(validLength);
+
+        ByteBuffer rows = ByteBuffer.allocate((int) validLength);
+        activeLog.read(rows, 0);
+        rows.flip();
+        ensureActiveCapacity((int) (validLength / ROW_BYTES));
+        while (rows.hasRemaining()) {
+            activeApps[activeCount] = rows.getInt();
+            activeUris[activeCount] = rows.getInt();
+            activeIps[activeCount] = rows.getInt();
+            activeTimestamps[activeCount] = rows.getLong();
+            activeCount++;
+        }
+        activeLog.position(validLength);
+    }
+
+    private void truncateQuietly(FileChannel channel, long length) {
+        try {
+            channel.truncate(length);
+            channel.position(length);
+        } catch (IOException e) {
+            log.error("Failed to roll back columnar store log: {}", e.getMessage());
+        }
+    }
+
+    private FileChannel openAppendable(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private Dictionary dictionaryFor(byte kind) {
+        return switch (kind) {
+            case APP -> apps;
+            case URI -> uris;
+            case IP -> ips;
+            default -> throw new IllegalStateException("Unknown dictionary kind: " + kind);
+        };
+    }
+
+    private Path segmentPath(int seq) {
+        return directory.resolve(String.format("segment-%08d.col", seq));
+    }
+
+    private Path activePath(int seq) {
+        return directory.resolve(String.format("active-%08d.log", seq));
+    }
+
+    private static long toSeconds(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            return id != null ? id : -1;
+        }
+
+        int intern(String value, byte kind, DataOutputStream output) throws IOException {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            output.writeByte(kind);
+            output.writeUTF(value);
+            return add(value);
+        }
+
+        int add(String value) {
+            int id = values.size();
+            values.add(value);
+            ids.put(value, id);
+            return id;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        void truncate(int size) {
+            while (values.size() > size) {
+                ids.remove(values.remove(values.size() - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.statsserver.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statsserver.model.DailyHitEntity;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DailyHitRepository extends JpaRepository<DailyHitEntity, Long> {
+
+    @Query("""
+        SELECT d.app, d.uri, SUM(d.hits)
+        FROM DailyHitEntity d
+        WHERE d.day BETWEEN ?1 AND ?2
+        AND (?3 IS NULL OR d.uri IN ?3)
+        GROUP BY d.app, d.uri
+        """)
+    List<Object[]> getStats(LocalDate start, LocalDate end, List<String> uris);
+
+    @Query("""
+        SELECT d
+        FROM DailyHitEntity d
+        WHERE d.day BETWEEN ?1 AND ?2
+        AND (?3 IS NULL OR d.uri IN ?3)
+        """)
+    List<DailyHitEntity> findSketches(LocalDate start, LocalDate end, List<String> uris);
+
+    List<DailyHitEntity> findAllByDayAndUriIn(LocalDate day, Collection<String> uris);
+
+    @Query("SELECT MAX(d.day) FROM DailyHitEntity d")
+    LocalDate findLastDay();
+}
@@ -0,0 +1,48 @@
+package ru.practicum.statsserver.repository;
+
+import ru.practicum.statsdto.ViewStats;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// счётчики по паре (app, uri), упакованной в long; для unique - множество id ip
+final class HitAggregation {
+    private final boolean unique;
+    private final Map<Long, long[]> counts = new HashMap<>();
+    private final Map<Long, BitSet> visitors = new HashMap<>();
+
+    HitAggregation(boolean unique) {
+        this.unique = unique;
+    }
+
+    void add(int app, int uri, int ip) {
+        long key = ((long) app << 32) | (uri & 0xFFFFFFFFL);
+        if (unique) {
+            visitors.computeIfAbsent(key, k -> new BitSet()).set(ip);
+        } else {
+            counts.computeIfAbsent(key, k -> new long[1])[0]++;
+        }
+    }
+
+    List<ViewStats> toViewStats(List<String> appNames, List<String> uriNames) {
+        List<ViewStats> result = new ArrayList<>();
+        if (unique) {
+            visitors.forEach((key, ips) -> result.add(toViewStats(key, ips.cardinality(), appNames, uriNames)));
+        } else {
+            counts.forEach((key, count) -> result.add(toViewStats(key, count[0], appNames, uriNames)));
+        }
+        result.sort((a, b) -> Long.compare(b.getHits(), a.getHits()));
+        return result;
+    }
+
+    private ViewStats toViewStats(long key, long hits, List<String> appNames, List<String> uriNames) {
+        return ViewStats.builder()
+                .app(appNames.get((int) (key >>> 32)))
+                .uri(uriNames.get((int) key))
+                .hits(hits)
+                .build();
+    }
+}
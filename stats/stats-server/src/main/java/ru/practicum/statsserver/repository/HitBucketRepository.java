@@ -0,0 +1,32 @@
+package ru.practicum.statsserver.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statsserver.model.HitBucketEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface HitBucketRepository extends JpaRepository<HitBucketEntity, Long> {
+
+    @Query("""
+        SELECT b.app, b.bucket, SUM(b.hits), COUNT(b)
+        FROM HitBucketEntity b
+        WHERE b.granularity = ?1 AND b.uri = ?2 AND b.bucket BETWEEN ?3 AND ?4
+        GROUP BY b.app, b.bucket
+        ORDER BY b.app, b.bucket
+        """)
+    List<Object[]> getSeries(String granularity, String uri, LocalDateTime start, LocalDateTime end);
+
+    // посетители корзин с началом в [start, end]; корзина входит целиком, даже если end внутри неё
+    @Query("""
+        SELECT b.app, b.uri, b.ip, SUM(b.hits)
+        FROM HitBucketEntity b
+        WHERE b.granularity = ?1 AND b.bucket BETWEEN ?2 AND ?3
+        AND (?4 IS NULL OR b.uri IN ?4)
+        GROUP BY b.app, b.uri, b.ip
+        """)
+    List<Object[]> getVisitors(String granularity, LocalDateTime start, LocalDateTime end, List<String> uris);
+}
@@ -0,0 +1,33 @@
+package ru.practicum.statsserver.repository;
+
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+import ru.practicum.statsdto.ViewStatsSeries;
+import ru.practicum.statsserver.model.SeriesInterval;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+ * Хранилище хитов; реализация выбирается свойством stats.store.backend (jpa | columnar).
+ * saveAll вызывается только потоком-писателем HitIngestBuffer.
+ */
+public interface HitStore {
+
+    void saveAll(List<EndpointHit> hits);
+
+    // результат отсортирован по убыванию hits
+    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    // ряд по каждому приложению для одного uri; start и end - начала корзин, пустые корзины не возвращаются
+    List<ViewStatsSeries> getTimeSeries(String uri, LocalDateTime start, LocalDateTime end, SeriesInterval interval);
+
+    // контроллер проверяет count, но пачка может прийти и из replay WAL: нулевой или отрицательный вес испортил бы итоги
+    static long checkedWeight(EndpointHit hit) {
+        long weight = hit.weight();
+        if (weight < 1 || weight > EndpointHit.MAX_COUNT) {
+            throw new IllegalArgumentException("Hit count must be between 1 and " + EndpointHit.MAX_COUNT + ": " + weight);
+        }
+        return weight;
+    }
+}
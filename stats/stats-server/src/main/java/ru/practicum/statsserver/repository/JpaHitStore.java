@@ -0,0 +1,533 @@
+package ru.practicum.statsserver.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+import ru.practicum.statsdto.ViewStatsPoint;
+import ru.practicum.statsdto.ViewStatsSeries;
+import ru.practicum.statsserver.model.DailyHitEntity;
+import ru.practicum.statsserver.model.SeriesInterval;
+import ru.practicum.statsserver.model.UriTotalEntity;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * Сырые хиты старше stats.compaction.raw-retention сворачиваются HitCompactor в daily_hits.
+ * Запрос, чей start раньше compactedUntil, складывает свёрнутые дни, часовые корзины неполных дней
+ * и сырые хиты (см. getStatsWithCompacted); unique по свёрнутым дням - оценка HyperLogLog.
+ *
+ * uri_visitors и uri_totals не сворачиваются: в них строка на (app, uri, ip) и на (app, uri), то есть
+ * размер ограничен числом разных посетителей, а не хитов. Удалить посетителя нельзя: вернувшись,
+ * он вставился бы заново и второй раз увеличил visitors в uri_totals.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.store.backend", havingValue = "jpa", matchIfMissing = true)
+public class JpaHitStore implements HitStore {
+    private static final String INSERT_HIT = """
+        INSERT INTO endpoint_hits (app, uri, ip, timestamp, hits) VALUES (?, ?, ?, ?, ?)
+        """;
+    // xmax = 0 только у вставленной строки: новый посетитель увеличивает visitors в uri_totals
+    private static final String UPSERT_VISITOR = """
+        WITH visitor AS (
+            INSERT INTO uri_visitors (app, uri, ip, first_seen, last_seen, hits)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (app, uri, ip) DO UPDATE SET
+                hits = uri_visitors.hits + EXCLUDED.hits,
+                first_seen = LEAST(uri_visitors.first_seen, EXCLUDED.first_seen),
+                last_seen = GREATEST(uri_visitors.last_seen, EXCLUDED.last_seen)
+            RETURNING app, uri, (xmax = 0) AS inserted
+        )
+        INSERT INTO uri_totals (app, uri, first_seen, last_seen, hits, visitors)
+        SELECT app, uri, ?, ?, ?, CASE WHEN inserted THEN 1 ELSE 0 END FROM visitor
+        ON CONFLICT (uri, app) DO UPDATE SET
+            hits = uri_totals.hits + EXCLUDED.hits,
+            visitors = uri_totals.visitors + EXCLUDED.visitors,
+            first_seen = LEAST(uri_totals.first_seen, EXCLUDED.first_seen),
+            last_seen = GREATEST(uri_totals.last_seen, EXCLUDED.last_seen)
+        """;
+    private static final String UPSERT_BUCKET = """
+        INSERT INTO hit_buckets (granularity, app, uri, ip, bucket, hits)
+        VALUES (?, ?, ?, ?, ?, ?)
+        ON CONFLICT (granularity, uri, bucket, app, ip) DO UPDATE SET
+            hits = hit_buckets.hits + EXCLUDED.hits
+        """;
+    private static final String DELETE_RAW = """
+        DELETE FROM endpoint_hits WHERE timestamp >= ? AND timestamp < ?
+        RETURNING app, uri, ip, hits
+        """;
+    private static final String UPSERT_DAILY = """
+        INSERT INTO daily_hits (app, uri, day, hits, visitors) VALUES (?, ?, ?, ?, ?)
+        ON CONFLICT (uri, app, day) DO UPDATE SET
+            hits = EXCLUDED.hits,
+            visitors = EXCLUDED.visitors
+        """;
+    private static final String DELETE_BUCKETS = """
+        DELETE FROM hit_buckets WHERE id IN (
+            SELECT id FROM hit_buckets WHERE granularity = ? AND bucket < ? LIMIT ?
+        )
+        """;
+    private static final int DAILY_LOOKUP_CHUNK = 1000;
+    private static final Duration TIMESTAMP_PRECISION = Duration.of(1, ChronoUnit.MICROS);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StatsRepository statsRepository;
+    private final UriVisitorRepository uriVisitorRepository;
+    private final UriTotalRepository uriTotalRepository;
+    private final HitBucketRepository hitBucketRepository;
+    private final DailyHitRepository dailyHitRepository;
+
+    // HitCompactor удаляет часовые корзины старше этого
+    @Value("${stats.retention.hour-buckets:90d}")
+    private Duration hourBucketRetention;
+
+    // дни раньше этого могут быть свёрнуты; null - свёрнутых нет
+    private volatile LocalDate compactedUntil;
+
+    @PostConstruct
+    public void loadCompactedUntil() {
+        LocalDate lastDay = dailyHitRepository.findLastDay();
+        compactedUntil = lastDay != null ? lastDay.plusDays(1) : null;
+    }
+
+    @Override
+    @Transactional
+    public void saveAll(List<EndpointHit> hits) {
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setString(1, hit.getApp());
+            ps.setString(2, hit.getUri());
+            ps.setString(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            ps.setLong(5, HitStore.checkedWeight(hit));
+        });
+
+        // один upsert не может затронуть строку дважды, поэтому посетители схлопываются до записи
+        List<VisitorDelta> visitors = collapseVisitors(hits);
+        jdbcTemplate.batchUpdate(UPSERT_VISITOR, visitors, visitors.size(), (ps, visitor) -> {
+            ps.setString(1, visitor.app);
+            ps.setString(2, visitor.uri);
+            ps.setString(3, visitor.ip);
+            ps.setTimestamp(4, Timestamp.valueOf(visitor.firstSeen));
+            ps.setTimestamp(5, Timestamp.valueOf(visitor.lastSeen));
+            ps.setLong(6, visitor.hits);
+            ps.setTimestamp(7, Timestamp.valueOf(visitor.firstSeen));
+            ps.setTimestamp(8, Timestamp.valueOf(visitor.lastSeen));
+            ps.setLong(9, visitor.hits);
+        });
+
+        List<BucketDelta> buckets = collapseBuckets(hits);
+        jdbcTemplate.batchUpdate(UPSERT_BUCKET, buckets, buckets.size(), (ps, bucket) -> {
+            ps.setString(1, bucket.granularity);
+            ps.setString(2, bucket.app);
+            ps.setString(3, bucket.uri);
+            ps.setString(4, bucket.ip);
+            ps.setTimestamp(5, Timestamp.valueOf(bucket.bucket));
+            ps.setLong(6, bucket.hits);
+        });
+    }
+
+    @Override
+    public List<ViewStatsSeries> getTimeSeries(String uri, LocalDateTime start, LocalDateTime end,
+                                               SeriesInterval interval) {
+        Map<String, ViewStatsSeries> series = new LinkedHashMap<>();
+        for (Object[] row : hitBucketRepository.getSeries(interval.getCode(), uri, start, end)) {
+            String app = (String) row[0];
+            series.computeIfAbsent(app, key -> ViewStatsSeries.builder()
+                            .app(app)
+                            .uri(uri)
+                            .interval(interval.getCode())
+                            .points(new ArrayList<>())
+                            .build())
+                    .getPoints()
+                    .add(ViewStatsPoint.builder()
+                            .start((LocalDateTime) row[1])
+                            .hits(((Number) row[2]).longValue())
+                            .unique(((Number) row[3]).longValue())
+                            .build());
+        }
+        return new ArrayList<>(series.values());
+    }
+
+    // один снимок на все запросы: иначе коммит свёртки между чтением daily_hits и сырых хитов потеряет срез
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        if (uris == null || uris.isEmpty()) {
+            return getRangeStats(start, end, null, unique);
+        }
+
+        // uri, вся история которых внутри [start, end], отвечаются из uri_totals; обычно это publishedOn..now
+        List<ViewStats> viewStats = new ArrayList<>();
+        Map<String, List<UriTotalEntity>> totalsByUri = uriTotalRepository.findAllByUriIn(uris).stream()
+                .collect(Collectors.groupingBy(UriTotalEntity::getUri));
+        List<String> rangeUris = new ArrayList<>();
+        for (String uri : new HashSet<>(uris)) {
+            List<UriTotalEntity> totals = totalsByUri.getOrDefault(uri, List.of());
+            if (totals.stream().allMatch(total -> !total.getFirstSeen().isBefore(start)
+                    && !total.getLastSeen().isAfter(end))) {
+                totals.forEach(total -> viewStats.add(ViewStats.builder()
+                        .app(total.getApp())
+                        .uri(uri)
+                        .hits(unique ? total.getVisitors() : total.getHits())
+                        .build()));
+            } else {
+                rangeUris.add(uri);
+            }
+        }
+        if (!rangeUris.isEmpty()) {
+            viewStats.addAll(getRangeStats(start, end, rangeUris, unique));
+        }
+        viewStats.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return viewStats;
+    }
+
+    private List<ViewStats> getRangeStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        LocalDate compacted = compactedUntil;
+        if (compacted != null && start.isBefore(compacted.atStartOfDay())) {
+            return getStatsWithCompacted(start, end, uris, unique, compacted);
+        }
+        if (uris == null) {
+            return getRawStats(start, end, null, unique);
+        }
+
+        List<Object[]> rollups = uriVisitorRepository.getRollups(start, end, uris);
+        Set<String> rawUris = new HashSet<>();
+        for (Object[] rollup : rollups) {
+            if (((Number) rollup[4]).longValue() > 0) {
+                rawUris.add((String) rollup[1]);
+            }
+        }
+
+        List<ViewStats> viewStats = new ArrayList<>();
+        for (Object[] rollup : rollups) {
+            String uri = (String) rollup[1];
+            long hits = ((Number) (unique ? rollup[3] : rollup[2])).longValue();
+            if (!rawUris.contains(uri) && hits > 0) {
+                viewStats.add(ViewStats.builder()
+                        .app((String) rollup[0])
+                        .uri(uri)
+                        .hits(hits)
+                        .build());
+            }
+        }
+
+        if (!rawUris.isEmpty()) {
+            log.info("Falling back to raw hits for {} uris", rawUris.size());
+            viewStats.addAll(getRawStats(start, end, new ArrayList<>(rawUris), unique));
+        }
+
+        viewStats.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return viewStats;
+    }
+
+    private List<VisitorDelta> collapseVisitors(List<EndpointHit> hits) {
+        Map<List<String>, VisitorDelta> visitors = new LinkedHashMap<>();
+        for (EndpointHit hit : hits) {
+            visitors.computeIfAbsent(List.of(hit.getApp(), hit.getUri(), hit.getIp()),
+                            key -> new VisitorDelta(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp()))
+                    .add(hit.getTimestamp(), hit.weight());
+        }
+        return new ArrayList<>(visitors.values());
+    }
+
+    public LocalDateTime findOldestRawHit() {
+        return statsRepository.findOldestTimestamp();
+    }
+
+    public LocalDate getCompactedUntil() {
+        return compactedUntil;
+    }
+
+    // сдвигается до коммита свёртки дня, чтобы /stats уже на первом срезе шёл через daily_hits
+    public void markCompacting(LocalDate day) {
+        if (compactedUntil == null || !compactedUntil.isAfter(day)) {
+            compactedUntil = day.plusDays(1);
+        }
+    }
+
+    /*
+     * Сворачивает сырые хиты [from, to) одного дня. Строки удаляются с RETURNING, поэтому в день попадает
+     * ровно то, что удалено, даже если писатель параллельно вставляет опоздавшие хиты за этот же период.
+     */
+    @Transactional
+    public long compact(LocalDateTime from, LocalDateTime to) {
+        LocalDate day = from.toLocalDate();
+        Map<List<String>, DailyDelta> deltas = new LinkedHashMap<>();
+        jdbcTemplate.query(DELETE_RAW, (RowCallbackHandler) rs -> {
+            String app = rs.getString(1);
+            String uri = rs.getString(2);
+            DailyDelta delta = deltas.computeIfAbsent(List.of(app, uri), key -> new DailyDelta(app, uri));
+            delta.hits += rs.getLong(4);
+            delta.visitors.add(rs.getString(3));
+        }, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        long folded = deltas.values().stream().mapToLong(delta -> delta.hits).sum();
+
+        List<String> uris = deltas.values().stream().map(delta -> delta.uri).distinct().toList();
+        for (int i = 0; i < uris.size(); i += DAILY_LOOKUP_CHUNK) {
+            List<String> chunk = uris.subList(i, Math.min(i + DAILY_LOOKUP_CHUNK, uris.size()));
+            for (DailyHitEntity existing : dailyHitRepository.findAllByDayAndUriIn(day, chunk)) {
+                DailyDelta delta = deltas.get(List.of(existing.getApp(), existing.getUri()));
+                if (delta != null) {
+                    delta.hits += existing.getHits();
+                    delta.visitors.merge(HyperLogLog.fromBytes(existing.getVisitors()));
+                }
+            }
+        }
+
+        List<DailyDelta> rows = new ArrayList<>(deltas.values());
+        jdbcTemplate.batchUpdate(UPSERT_DAILY, rows, rows.size(), (ps, delta) -> {
+            ps.setString(1, delta.app);
+            ps.setString(2, delta.uri);
+            ps.setObject(3, day);
+            ps.setLong(4, delta.hits);
+            ps.setBytes(5, delta.visitors.toBytes());
+        });
+        return folded;
+    }
+
+    public int pruneBuckets(SeriesInterval interval, LocalDateTime before, int limit) {
+        return jdbcTemplate.update(DELETE_BUCKETS, interval.getCode(), Timestamp.valueOf(before), limit);
+    }
+
+    /*
+     * Диапазон, начинающийся в свёрнутых днях, складывается из частей:
+     * - неполный свёрнутый день на краю - из часовых корзин (в них и опоздавшие хиты), с точностью до часа:
+     *   час, внутри которого граница, учитывается целиком;
+     * - полные свёрнутые дни - из daily_hits и опоздавших сырых хитов этих дней;
+     * - всё начиная с compactedUntil - из сырых хитов.
+     * Часовые корзины живут stats.retention.hour-buckets; неполный день старше этого учитывается целиком.
+     */
+    private List<ViewStats> getStatsWithCompacted(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                  boolean unique, LocalDate compacted) {
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = end.toLocalDate().isBefore(compacted) ? end.toLocalDate() : compacted.minusDays(1);
+        LocalDateTime hourlySince = LocalDateTime.now().minus(hourBucketRetention);
+
+        CompactedCounts counts = new CompactedCounts(unique);
+        LocalDate fromDay = firstDay;
+        LocalDate toDay = lastDay;
+        LocalDateTime rawStart = start;
+        LocalDateTime rawEnd = end;
+        boolean firstPartial = start.isAfter(firstDay.atStartOfDay());
+        boolean lastPartial = end.isBefore(endOfDay(lastDay));
+        if ((firstPartial || (firstDay.equals(lastDay) && lastPartial))
+                && !firstDay.atStartOfDay().isBefore(hourlySince)) {
+            counts.addVisitors(hitBucketRepository.getVisitors(SeriesInterval.HOUR.getCode(),
+                    SeriesInterval.HOUR.truncate(start), min(end, endOfDay(firstDay)), uris));
+            fromDay = firstDay.plusDays(1);
+            rawStart = fromDay.atStartOfDay();
+        }
+        if (lastPartial && !lastDay.equals(firstDay) && !lastDay.atStartOfDay().isBefore(hourlySince)) {
+            counts.addVisitors(hitBucketRepository.getVisitors(SeriesInterval.HOUR.getCode(),
+                    lastDay.atStartOfDay(), end, uris));
+            toDay = lastDay.minusDays(1);
+            rawEnd = endOfDay(toDay);
+        }
+
+        if (!fromDay.isAfter(toDay)) {
+            if (unique) {
+                dailyHitRepository.findSketches(fromDay, toDay, uris).forEach(counts::addSketch);
+            } else {
+                for (Object[] daily : dailyHitRepository.getStats(fromDay, toDay, uris)) {
+                    counts.addHits((String) daily[0], (String) daily[1], ((Number) daily[2]).longValue());
+                }
+            }
+        }
+        if (!rawStart.isAfter(rawEnd)) {
+            if (unique) {
+                for (Object[] visitor : statsRepository.getVisitors(rawStart, rawEnd, uris)) {
+                    counts.addVisitor((String) visitor[0], (String) visitor[1], (String) visitor[2], 0);
+                }
+            } else {
+                getRawStats(rawStart, rawEnd, uris, false)
+                        .forEach(raw -> counts.addHits(raw.getApp(), raw.getUri(), raw.getHits()));
+            }
+        }
+        return counts.toViewStats();
+    }
+
+    // последний момент дня, который различает timestamp в PostgreSQL
+    private static LocalDateTime endOfDay(LocalDate day) {
+        return day.plusDays(1).atStartOfDay().minus(TIMESTAMP_PRECISION);
+    }
+
+    private static LocalDateTime min(LocalDateTime left, LocalDateTime right) {
+        return left.isBefore(right) ? left : right;
+    }
+
+    // хит попадает в корзину каждой гранулярности; пачка схлопывается так же, как посетители
+    private List<BucketDelta> collapseBuckets(List<EndpointHit> hits) {
+        Map<List<Object>, BucketDelta> buckets = new LinkedHashMap<>();
+        for (EndpointHit hit : hits) {
+            for (SeriesInterval interval : SeriesInterval.values()) {
+                LocalDateTime bucket = interval.truncate(hit.getTimestamp());
+                buckets.computeIfAbsent(List.of(interval, hit.getApp(), hit.getUri(), hit.getIp(), bucket),
+                                key -> new BucketDelta(interval.getCode(), hit.getApp(), hit.getUri(),
+                                        hit.getIp(), bucket))
+                        .hits += hit.weight();
+            }
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    private List<ViewStats> getRawStats(LocalDateTime start, LocalDateTime end,
+                                        List<String> uris, boolean unique) {
+        List<Object[]> results;
+        if (unique) {
+            results = statsRepository.getUniqueStats(start, end, uris);
+        } else {
+            results = statsRepository.getStats(start, end, uris);
+        }
+
+        return results.stream()
+                .map(result -> ViewStats.builder()
+                        .app((String) result[0])
+                        .uri((String) result[1])
+                        .hits((Long) result[2])
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    // unique по свёрнутым дням - оценка HyperLogLog, ip из корзин и сырых хитов добавляются в скетч;
+    // где скетча нет, уникальные считаются точно
+    private static class CompactedCounts {
+        private final boolean unique;
+        private final Map<List<String>, Long> hits = new LinkedHashMap<>();
+        private final Map<List<String>, HyperLogLog> sketches = new HashMap<>();
+        private final Map<List<String>, Set<String>> visitors = new HashMap<>();
+
+        CompactedCounts(boolean unique) {
+            this.unique = unique;
+        }
+
+        void addHits(String app, String uri, long count) {
+            hits.merge(List.of(app, uri), count, Long::sum);
+        }
+
+        void addSketch(DailyHitEntity daily) {
+            HyperLogLog sketch = HyperLogLog.fromBytes(daily.getVisitors());
+            sketches.merge(List.of(daily.getApp(), daily.getUri()), sketch, (left, right) -> {
+                left.merge(right);
+                return left;
+            });
+        }
+
+        void addVisitor(String app, String uri, String ip, long count) {
+            if (unique) {
+                visitors.computeIfAbsent(List.of(app, uri), key -> new HashSet<>()).add(ip);
+            } else {
+                addHits(app, uri, count);
+            }
+        }
+
+        void addVisitors(List<Object[]> rows) {
+            for (Object[] row : rows) {
+                addVisitor((String) row[0], (String) row[1], (String) row[2], ((Number) row[3]).longValue());
+            }
+        }
+
+        List<ViewStats> toViewStats() {
+            if (unique) {
+                visitors.forEach((key, ips) -> {
+                    HyperLogLog sketch = sketches.get(key);
+                    if (sketch != null) {
+                        ips.forEach(sketch::add);
+                    } else {
+                        hits.put(key, (long) ips.size());
+                    }
+                });
+                sketches.forEach((key, sketch) -> hits.put(key, sketch.estimate()));
+            }
+            List<ViewStats> viewStats = new ArrayList<>(hits.size());
+            hits.forEach((key, count) -> viewStats.add(ViewStats.builder()
+                    .app(key.get(0))
+                    .uri(key.get(1))
+                    .hits(count)
+                    .build()));
+            viewStats.sort(Comparator.comparing(ViewStats::getHits).reversed());
+            return viewStats;
+        }
+    }
+
+    private static class DailyDelta {
+        private final String app;
+        private final String uri;
+        private final HyperLogLog visitors = new HyperLogLog();
+        private long hits;
+
+        DailyDelta(String app, String uri) {
+            this.app = app;
+            this.uri = uri;
+        }
+    }
+
+    private static class BucketDelta {
+        private final String granularity;
+        private final String app;
+        private final String uri;
+        private final String ip;
+        private final LocalDateTime bucket;
+        private long hits;
+
+        BucketDelta(String granularity, String app, String uri, String ip, LocalDateTime bucket) {
+            this.granularity = granularity;
+            this.app = app;
+            this.uri = uri;
+            this.ip = ip;
+            this.bucket = bucket;
+        }
+    }
+
+    private static class VisitorDelta {
+        private final String app;
+        private final String uri;
+        private final String ip;
+        private LocalDateTime firstSeen;
+        private LocalDateTime lastSeen;
+        private long hits;
+
+        VisitorDelta(String app, String uri, String ip, LocalDateTime timestamp) {
+            this.app = app;
+            this.uri = uri;
+            this.ip = ip;
+            this.firstSeen = timestamp;
+            this.lastSeen = timestamp;
+        }
+
+        void add(LocalDateTime timestamp, long count) {
+            if (timestamp.isBefore(firstSeen)) {
+                firstSeen = timestamp;
+            }
+            if (timestamp.isAfter(lastSeen)) {
+                lastSeen = timestamp;
+            }
+            hits += count;
+        }
+    }
+}
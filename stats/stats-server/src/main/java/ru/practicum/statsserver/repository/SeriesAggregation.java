@@ -0,0 +1,55 @@
+package ru.practicum.statsserver.repository;
+
+import ru.practicum.statsdto.ViewStatsPoint;
+import ru.practicum.statsdto.ViewStatsSeries;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// корзины временного ряда одного uri по приложениям: хиты и множество id ip в каждой корзине
+final class SeriesAggregation {
+    private final long bucketSeconds;
+    private final Map<Integer, TreeMap<Long, Bucket>> buckets = new HashMap<>();
+
+    SeriesAggregation(long bucketSeconds) {
+        this.bucketSeconds = bucketSeconds;
+    }
+
+    void add(int app, long timestamp, int ip) {
+        long bucket = Math.floorDiv(timestamp, bucketSeconds) * bucketSeconds;
+        Bucket counts = buckets.computeIfAbsent(app, key -> new TreeMap<>())
+                .computeIfAbsent(bucket, key -> new Bucket());
+        counts.hits++;
+        counts.visitors.set(ip);
+    }
+
+    List<ViewStatsSeries> toSeries(List<String> appNames, String uri, String interval) {
+        List<ViewStatsSeries> result = new ArrayList<>();
+        buckets.forEach((app, appBuckets) -> {
+            List<ViewStatsPoint> points = new ArrayList<>(appBuckets.size());
+            appBuckets.forEach((bucket, counts) -> points.add(ViewStatsPoint.builder()
+                    .start(LocalDateTime.ofEpochSecond(bucket, 0, ZoneOffset.UTC))
+                    .hits(counts.hits)
+                    .unique((long) counts.visitors.cardinality())
+                    .build()));
+            result.add(ViewStatsSeries.builder()
+                    .app(appNames.get(app))
+                    .uri(uri)
+                    .interval(interval)
+                    .points(points)
+                    .build());
+        });
+        return result;
+    }
+
+    private static class Bucket {
+        private long hits;
+        private final BitSet visitors = new BitSet();
+    }
+}
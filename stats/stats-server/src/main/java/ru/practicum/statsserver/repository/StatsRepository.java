@@ -12,12 +12,12 @@ import java.util.List;
 public interface StatsRepository extends JpaRepository<EndpointHitEntity, Long> {
 
     @Query("""
-        SELECT h.app, h.uri, COUNT(h.ip) as hits
+        SELECT h.app, h.uri, SUM(h.hits) as hits
         FROM EndpointHitEntity h
         WHERE h.timestamp BETWEEN ?1 AND ?2
         AND (?3 IS NULL OR h.uri IN ?3)
         GROUP BY h.app, h.uri
-        ORDER BY COUNT(h.ip) DESC
+        ORDER BY SUM(h.hits) DESC
         """)
     List<Object[]> getStats(LocalDateTime start, LocalDateTime end, List<String> uris);
 
@@ -30,4 +30,15 @@ public interface StatsRepository extends JpaRepository<EndpointHitEntity, Long>
         ORDER BY COUNT(DISTINCT h.ip) DESC
         """)
     List<Object[]> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    @Query("""
+        SELECT DISTINCT h.app, h.uri, h.ip
+        FROM EndpointHitEntity h
+        WHERE h.timestamp BETWEEN ?1 AND ?2
+        AND (?3 IS NULL OR h.uri IN ?3)
+        """)
+    List<Object[]> getVisitors(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    @Query("SELECT MIN(h.timestamp) FROM EndpointHitEntity h")
+    LocalDateTime findOldestTimestamp();
 }
\ No newline at end of file
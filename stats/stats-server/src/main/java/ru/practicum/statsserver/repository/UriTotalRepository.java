@@ -0,0 +1,14 @@
+package ru.practicum.statsserver.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statsserver.model.UriTotalEntity;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UriTotalRepository extends JpaRepository<UriTotalEntity, Long> {
+
+    List<UriTotalEntity> findAllByUriIn(Collection<String> uris);
+}
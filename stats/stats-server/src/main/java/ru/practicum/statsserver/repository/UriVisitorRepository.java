@@ -0,0 +1,29 @@
+package ru.practicum.statsserver.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.statsserver.model.UriVisitorEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UriVisitorRepository extends JpaRepository<UriVisitorEntity, Long> {
+
+    /*
+     * Посетитель, чей интервал [firstSeen, lastSeen] целиком внутри диапазона, учитывается точно,
+     * непересекающийся - не учитывается. Частичное пересечение (partial) требует сырых данных.
+     */
+    @Query("""
+        SELECT v.app, v.uri,
+            SUM(CASE WHEN v.firstSeen >= ?1 AND v.lastSeen <= ?2 THEN v.hits ELSE 0 END),
+            SUM(CASE WHEN v.firstSeen >= ?1 AND v.lastSeen <= ?2 THEN 1 ELSE 0 END),
+            SUM(CASE WHEN v.lastSeen >= ?1 AND v.firstSeen <= ?2
+                AND (v.firstSeen < ?1 OR v.lastSeen > ?2) THEN 1 ELSE 0 END)
+        FROM UriVisitorEntity v
+        WHERE v.uri IN ?3
+        GROUP BY v.app, v.uri
+        """)
+    List<Object[]> getRollups(LocalDateTime start, LocalDateTime end, List<String> uris);
+}
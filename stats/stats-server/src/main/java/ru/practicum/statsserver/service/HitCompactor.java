@@ -0,0 +1,147 @@
+package ru.practicum.statsserver.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.statsserver.model.SeriesInterval;
+import ru.practicum.statsserver.repository.JpaHitStore;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/*
+ * Фоновая свёртка сырых хитов старше raw-retention в daily_hits и удаление старых минутных и часовых корзин.
+ * Работает маленькими шагами (срез сырых хитов или порция корзин - одна транзакция) с паузой между ними
+ * и не делает ничего, пока у HitIngestBuffer есть очередь больше max-ingest-backlog.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${stats.compaction.enabled:true} and '${stats.store.backend:jpa}' == 'jpa'")
+public class HitCompactor implements SmartLifecycle {
+    private final JpaHitStore hitStore;
+    private final HitIngestBuffer hitIngestBuffer;
+    private final StatsQueryCache statsQueryCache;
+    private final Duration rawRetention;
+    private final Duration slice;
+    private final Duration pause;
+    private final Duration idleInterval;
+    private final int maxIngestBacklog;
+    private final Duration minuteBucketRetention;
+    private final Duration hourBucketRetention;
+    private final int pruneBatchSize;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public HitCompactor(JpaHitStore hitStore,
+                        HitIngestBuffer hitIngestBuffer,
+                        StatsQueryCache statsQueryCache,
+                        @Value("${stats.compaction.raw-retention:30d}") Duration rawRetention,
+                        @Value("${stats.compaction.slice:1h}") Duration slice,
+                        @Value("${stats.compaction.pause:1s}") Duration pause,
+                        @Value("${stats.compaction.idle-interval:10m}") Duration idleInterval,
+                        @Value("${stats.compaction.max-ingest-backlog:1000}") int maxIngestBacklog,
+                        @Value("${stats.retention.minute-buckets:7d}") Duration minuteBucketRetention,
+                        @Value("${stats.retention.hour-buckets:90d}") Duration hourBucketRetention,
+                        @Value("${stats.retention.prune-batch-size:10000}") int pruneBatchSize) {
+        if (slice.isZero() || slice.isNegative() || Duration.ofDays(1).toMillis() % slice.toMillis() != 0) {
+            throw new IllegalArgumentException("stats.compaction.slice must divide a day, got " + slice);
+        }
+        this.hitStore = hitStore;
+        this.hitIngestBuffer = hitIngestBuffer;
+        this.statsQueryCache = statsQueryCache;
+        this.rawRetention = rawRetention;
+        this.slice = slice;
+        this.pause = pause;
+        this.idleInterval = idleInterval;
+        this.maxIngestBacklog = maxIngestBacklog;
+        this.minuteBucketRetention = minuteBucketRetention;
+        this.hourBucketRetention = hourBucketRetention;
+        this.pruneBatchSize = pruneBatchSize;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "hit-compactor");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Hit compactor started: rawRetention={}, slice={}, pause={}", rawRetention, slice, pause);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (hitIngestBuffer.backlog() > maxIngestBacklog) {
+                    Thread.sleep(pause.toMillis());
+                    continue;
+                }
+                boolean worked = compactNextSlice() || pruneBuckets();
+                Thread.sleep(worked ? pause.toMillis() : idleInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Hit compaction step failed: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(idleInterval.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // самый старый сырой срез до границы хранения; граница выровнена по дню, чтобы день сворачивался целиком
+    private boolean compactNextSlice() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(rawRetention).truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime oldest = hitStore.findOldestRawHit();
+        if (oldest == null || !oldest.isBefore(cutoff)) {
+            return false;
+        }
+
+        LocalDate day = oldest.toLocalDate();
+        LocalDateTime dayStart = day.atStartOfDay();
+        long sliceMillis = slice.toMillis();
+        long offset = Duration.between(dayStart, oldest).toMillis() / sliceMillis * sliceMillis;
+        LocalDateTime from = dayStart.plus(Duration.ofMillis(offset));
+        LocalDateTime to = from.plus(slice);
+
+        hitStore.markCompacting(day);
+        long folded = hitStore.compact(from, to);
+        statsQueryCache.invalidateStartingBefore(hitStore.getCompactedUntil().atStartOfDay());
+        log.info("Compacted {} raw hits from [{}, {})", folded, from, to);
+        return true;
+    }
+
+    private boolean pruneBuckets() {
+        LocalDateTime now = LocalDateTime.now();
+        int removed = hitStore.pruneBuckets(SeriesInterval.MINUTE, now.minus(minuteBucketRetention), pruneBatchSize)
+                + hitStore.pruneBuckets(SeriesInterval.HOUR, now.minus(hourBucketRetention), pruneBatchSize);
+        if (removed > 0) {
+            log.debug("Pruned {} expired time series buckets", removed);
+        }
+        return removed > 0;
+    }
+}
@@ -0,0 +1,339 @@
+package ru.practicum.statsserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsserver.exception.IngestOverloadedException;
+import ru.practicum.statsserver.repository.HitStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Хит подтверждается сразу после попадания в буфер (и в WAL, если он включён).
+ * Один поток-писатель забирает всё накопившееся и коммитит одной пачкой,
+ * поэтому пропускная способность растёт с размером пачки, а не упирается в latency коммита.
+ * Пачку, которую БД отвергает из-за данных, писатель делит пополам до одной плохой строки
+ * и откладывает её в dead letter, а не повторяет бесконечно.
+ */
+@Slf4j
+@Component
+public class HitIngestBuffer implements SmartLifecycle {
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5000;
+
+    private final HitStore hitStore;
+    private final StatsQueryCache statsQueryCache;
+    private final BlockingQueue<EndpointHit> queue;
+    // место в очереди резервируется до записи в WAL, чтобы принятый в журнал хит не получил отказ
+    private final Semaphore slots;
+    private final int capacity;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final long offerTimeoutNanos;
+    private final HitWriteAheadLog wal;
+    private final Counter committedHits;
+    private final Counter committedBatches;
+    private final Counter deadHits;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Object flushMonitor = new Object();
+    private long appended;
+    private long committed;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public HitIngestBuffer(HitStore hitStore,
+                           StatsQueryCache statsQueryCache,
+                           MeterRegistry meterRegistry,
+                           @Value("${stats.ingest.capacity:65536}") int capacity,
+                           @Value("${stats.ingest.batch-size:1000}") int batchSize,
+                           @Value("${stats.ingest.max-wait:50ms}") Duration maxWait,
+                           @Value("${stats.ingest.offer-timeout:100ms}") Duration offerTimeout,
+                           @Value("${stats.ingest.wal.enabled:false}") boolean walEnabled,
+                           @Value("${stats.ingest.wal.path:data/hits.wal}") String walPath,
+                           @Value("${stats.ingest.wal.fsync:true}") boolean walFsync,
+                           @Value("${stats.ingest.wal.segment-size:64MB}") DataSize walSegmentSize) {
+        this.hitStore = hitStore;
+        this.statsQueryCache = statsQueryCache;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.slots = new Semaphore(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.wal = walEnabled ? new HitWriteAheadLog(Path.of(walPath), walFsync, walSegmentSize.toBytes()) : null;
+
+        Gauge.builder("stats.ingest.buffer.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.committedHits = meterRegistry.counter("stats.ingest.committed.hits");
+        this.committedBatches = meterRegistry.counter("stats.ingest.committed.batches");
+        this.deadHits = meterRegistry.counter("stats.ingest.dead.hits");
+    }
+
+    public void append(EndpointHit hit) {
+        appendAll(List.of(hit));
+    }
+
+    // хиты сначала пишутся в WAL и только потом встают в очередь; fsync один на всю пачку и вне appendLock
+    public void appendAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        if (hits.size() > capacity) {
+            throw new IllegalArgumentException("Batch of " + hits.size() + " hits exceeds buffer capacity " + capacity);
+        }
+        // до очереди: TopUriTracker и кэш запросов складывают count сразу после приёма
+        hits.forEach(HitStore::checkedWeight);
+        List<byte[]> records = wal != null ? hits.stream().map(HitWriteAheadLog::encode).toList() : null;
+
+        try {
+            if (!slots.tryAcquire(hits.size(), offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new IngestOverloadedException("Hit buffer is full, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestOverloadedException("Interrupted while waiting for hit buffer");
+        }
+
+        long walRecords = 0;
+        appendLock.lock();
+        try {
+            if (wal != null) {
+                walRecords = wal.append(records);
+            }
+            queue.addAll(hits);
+            appended += hits.size();
+        } catch (IOException e) {
+            slots.release(hits.size());
+            log.error("Failed to append hits to WAL: {}", e.getMessage());
+            throw new IngestOverloadedException("Failed to persist hits, retry later");
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (wal != null) {
+            try {
+                wal.sync(walRecords);
+            } catch (IOException e) {
+                // хиты уже в очереди и будут записаны, но без гарантии переживания рестарта
+                log.error("Failed to fsync hit WAL: {}", e.getMessage());
+            }
+        }
+    }
+    // ждёт, пока хиты, принятые до вызова, окажутся в БД, чтобы /stats видел только что записанное
+    public void awaitFlushed(Duration timeout) {
+        long target;
+        appendLock.lock();
+        try {
+            target = appended;
+        } finally {
+            appendLock.unlock();
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (flushMonitor) {
+            long remaining;
+            while (committed < target && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(flushMonitor, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // сколько принятых хитов ещё ждут записи
+    int backlog() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        // replay идёт до запуска писателя: недоступная БД валит старт, а не держит его бесконечно
+        replayWal();
+        running = true;
+        writer = new Thread(this::runWriter, "hit-ingest-writer");
+        writer.start();
+        log.info("Hit ingest buffer started: capacity={}, batchSize={}, wal={}",
+                queue.remainingCapacity(), batchSize, wal != null);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                log.error("Failed to close hit WAL: {}", e.getMessage());
+            }
+        }
+        log.info("Hit ingest buffer stopped, {} hits left unwritten", queue.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // стартует раньше веб-сервера и останавливается после него, чтобы не терять хиты на выключении
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void runWriter() {
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EndpointHit first = queue.poll(maxWaitNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                slots.release(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (!write(batch)) {
+                return;
+            }
+            markCommitted(batch.size());
+            batch.clear();
+        }
+    }
+
+    // false - запись прервана остановкой, пачка остаётся в WAL
+    private boolean write(List<EndpointHit> batch) {
+        int attempt = 0;
+        while (true) {
+            try {
+                save(batch);
+                committedHits.increment(batch.stream().mapToLong(EndpointHit::weight).sum());
+                committedBatches.increment();
+                return true;
+            } catch (RuntimeException e) {
+                if (isDataError(e)) {
+                    // повтор не поможет: делим пачку, пока плохая строка не останется одна
+                    if (batch.size() == 1) {
+                        deadLetter(batch.get(0), e);
+                        return true;
+                    }
+                    int middle = batch.size() / 2;
+                    return write(batch.subList(0, middle)) && write(batch.subList(middle, batch.size()));
+                }
+                attempt++;
+                log.error("Failed to write batch of {} hits (attempt {}): {}", batch.size(), attempt, e.getMessage());
+                if (!running) {
+                    log.error("Shutting down with {} unwritten hits{}", batch.size() + queue.size(),
+                            wal != null ? ", they stay in the WAL" : "");
+                    return false;
+                }
+                try {
+                    Thread.sleep(Math.min(MAX_RETRY_BACKOFF_MILLIS, 100L * attempt * attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    // каждая попытка закрывает свой epoch кеша; неудачная ничего не записала
+    private void save(List<EndpointHit> batch) {
+        List<EndpointHit> saved = List.of();
+        statsQueryCache.beforeWrite();
+        try {
+            hitStore.saveAll(batch);
+            saved = batch;
+        } finally {
+            statsQueryCache.afterWrite(saved);
+        }
+    }
+
+    private static boolean isDataError(RuntimeException e) {
+        return e instanceof DataIntegrityViolationException
+                || e instanceof IllegalArgumentException
+                || e instanceof NullPointerException
+                || e instanceof ArithmeticException;
+    }
+
+    private void deadLetter(EndpointHit hit, RuntimeException e) {
+        deadHits.increment();
+        log.error("Dropping hit that cannot be stored: {}: {}", hit, e.getMessage());
+        if (wal != null) {
+            try {
+                wal.deadLetter(hit, String.valueOf(e.getMessage()));
+            } catch (IOException io) {
+                log.error("Failed to write dead letter: {}", io.getMessage());
+            }
+        }
+    }
+
+    private void markCommitted(int count) {
+        long total;
+        synchronized (flushMonitor) {
+            committed += count;
+            total = committed;
+            flushMonitor.notifyAll();
+        }
+        if (wal == null) {
+            return;
+        }
+
+        // очередь и WAL заполняются в одном порядке, поэтому первые total записей журнала уже в БД
+        try {
+            wal.checkpoint(total);
+        } catch (IOException e) {
+            log.error("Failed to checkpoint hit WAL: {}", e.getMessage());
+        }
+    }
+
+    private void replayWal() {
+        if (wal == null) {
+            return;
+        }
+        try {
+            List<EndpointHit> pending = wal.readPending();
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, pending.size());
+                if (!write(pending.subList(from, to))) {
+                    throw new IllegalStateException("Failed to replay hit WAL");
+                }
+                wal.markReplayed(to);
+            }
+            wal.reset();
+            if (!pending.isEmpty()) {
+                log.info("Replayed {} hits from WAL", pending.size());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay hit WAL", e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package ru.practicum.statsserver.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.statsdto.DateTimeCodec;
+import ru.practicum.statsdto.EndpointHit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * Журнал принятых, но ещё не записанных в БД хитов. Запись - app, uri, ip, timestamp через writeUTF и count.
+ * Журнал разбит на сегменты <path>.<номер первой записи>, в <path>.checkpoint - число записей, уже
+ * сохранённых в БД. Сегменты целиком до checkpoint удаляются, поэтому под постоянной нагрузкой журнал
+ * не растёт, а после падения повторяется только хвост за checkpoint (и не больше одной пачки,
+ * закоммиченной перед самым падением). Нумерация записей начинается заново после каждого replay.
+ * fsync групповой: пока идёт force, новые записи копятся и покрываются следующим одним force.
+ */
+@Slf4j
+class HitWriteAheadLog implements AutoCloseable {
+    private final Path path;
+    private final boolean fsync;
+    private final long segmentBytes;
+    private final FileChannel checkpointChannel;
+    private final Object syncMonitor = new Object();
+    // закрытые сегменты, ждущие checkpoint; дописывает appender под appendLock буфера, удаляет писатель
+    private final Deque<Segment> closedSegments = new ArrayDeque<>();
+
+    private FileChannel channel;
+    private Segment activeSegment;
+    private volatile long written;
+    private long synced;
+    private long replayBase;
+
+    HitWriteAheadLog(Path path, boolean fsync, long segmentBytes) {
+        this.path = path.toAbsolutePath();
+        this.fsync = fsync;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(this.path.getParent());
+            this.checkpointChannel = FileChannel.open(sibling("checkpoint"), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open hit WAL " + path, e);
+        }
+    }
+
+    // ошибка кодирования - ошибка данных хита, а не диска
+    static byte[] encode(EndpointHit hit) {
+        if (hit.getApp() == null || hit.getUri() == null || hit.getIp() == null || hit.getTimestamp() == null) {
+            throw new IllegalArgumentException("Hit must have app, uri, ip and timestamp");
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeUTF(hit.getApp());
+            output.writeUTF(hit.getUri());
+            output.writeUTF(hit.getIp());
+            output.writeUTF(DateTimeCodec.format(hit.getTimestamp()));
+            output.writeLong(hit.weight());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Hit cannot be written to WAL: " + e.getMessage(), e);
+        }
+    }
+
+    // хиты прошлого запуска после checkpoint; недописанная при падении последняя запись отбрасывается
+    List<EndpointHit> readPending() throws IOException {
+        replayBase = readCheckpoint();
+        List<EndpointHit> hits = new ArrayList<>();
+        for (Segment segment : listSegments()) {
+            long record = segment.first;
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(segment.path)))) {
+                while (true) {
+                    EndpointHit hit = EndpointHit.builder()
+                            .app(input.readUTF())
+                            .uri(input.readUTF())
+                            .ip(input.readUTF())
+                            .timestamp(DateTimeCodec.parse(input.readUTF()))
+                            .count(input.readLong())
+                            .build();
+                    if (record++ >= replayBase) {
+                        hits.add(hit);
+                    }
+                }
+            } catch (EOFException e) {
+                log.debug("Reached end of hit WAL segment {}", segment.path.getFileName());
+            } catch (UTFDataFormatException | DateTimeParseException e) {
+                // хвост, не покрытый fsync, после падения может оказаться мусором
+                log.warn("Hit WAL segment {} ends with a torn record: {}", segment.path.getFileName(), e.getMessage());
+            }
+        }
+        return hits;
+    }
+
+    // первые count записей из readPending уже в БД
+    void markReplayed(long count) throws IOException {
+        writeCheckpoint(replayBase + count);
+    }
+
+    // после replay: старые сегменты удаляются раньше, чем обнуляется checkpoint и создаётся новый сегмент
+    void reset() throws IOException {
+        for (Segment segment : listSegments()) {
+            Files.deleteIfExists(segment.path);
+        }
+        writeCheckpoint(0);
+        written = 0;
+        synced = 0;
+        openSegment(0);
+    }
+
+    // вызывается под appendLock буфера; возвращает номер, до которого нужно дождаться sync
+    long append(List<byte[]> records) throws IOException {
+        if (channel.position() >= segmentBytes) {
+            rotate();
+        }
+        long position = channel.position();
+        try {
+            for (byte[] record : records) {
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            // хвост от прерванной записи иначе склеится со следующими
+            channel.truncate(position);
+            channel.position(position);
+            throw e;
+        }
+        written += records.size();
+        return written;
+    }
+
+    // вызывается без appendLock: один force покрывает всё, что успели дописать другие запросы
+    void sync(long records) throws IOException {
+        if (!fsync) {
+            return;
+        }
+        synchronized (syncMonitor) {
+            if (synced >= records) {
+                return;
+            }
+            long target = written;
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    // первые committed записей текущего запуска сохранены в БД
+    void checkpoint(long committed) throws IOException {
+        writeCheckpoint(committed);
+        while (true) {
+            Segment segment;
+            synchronized (closedSegments) {
+                segment = closedSegments.peekFirst();
+                if (segment == null || segment.end > committed) {
+                    return;
+                }
+                closedSegments.removeFirst();
+            }
+            Files.deleteIfExists(segment.path);
+        }
+    }
+
+    void deadLetter(EndpointHit hit, String reason) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(sibling("dead"), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(String.join("\t", String.valueOf(hit.getApp()), String.valueOf(hit.getUri()),
+                    String.valueOf(hit.getIp()), String.valueOf(hit.getTimestamp()), String.valueOf(hit.weight()),
+                    reason.replace('\n', ' ')));
+            writer.newLine();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncMonitor) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        checkpointChannel.close();
+    }
+
+    private void rotate() throws IOException {
+        synchronized (syncMonitor) {
+            if (fsync) {
+                channel.force(false);
+                synced = written;
+            }
+            channel.close();
+            activeSegment.end = written;
+            synchronized (closedSegments) {
+                closedSegments.addLast(activeSegment);
+            }
+            openSegment(written);
+        }
+    }
+
+    private void openSegment(long first) throws IOException {
+        Path segmentPath = sibling(Long.toString(first));
+        channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        activeSegment = new Segment(segmentPath, first);
+    }
+
+    private List<Segment> listSegments() throws IOException {
+        String prefix = path.getFileName() + ".";
+        try (Stream<Path> files = Files.list(path.getParent())) {
+            return files
+                    .filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(prefix) && name.length() > prefix.length()
+                                && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+                    })
+                    .map(file -> new Segment(file,
+                            Long.parseLong(file.getFileName().toString().substring(prefix.length()))))
+                    .sorted(Comparator.comparingLong(segment -> segment.first))
+                    .toList();
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (checkpointChannel.size() < Long.BYTES) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (checkpointChannel.read(buffer, buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        return buffer.flip().getLong();
+    }
+
+    private void writeCheckpoint(long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(value).flip();
+        while (buffer.hasRemaining()) {
+            checkpointChannel.write(buffer, buffer.position());
+        }
+        if (fsync) {
+            checkpointChannel.force(false);
+        }
+    }
+
+    private Path sibling(String suffix) {
+        return path.resolveSibling(path.getFileName() + "." + suffix);
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final long first;
+        private long end;
+
+        Segment(Path path, long first) {
+            this.path = path;
+            this.first = first;
+        }
+    }
+}
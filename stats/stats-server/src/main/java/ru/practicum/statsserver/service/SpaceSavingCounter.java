@@ -0,0 +1,91 @@
+package ru.practicum.statsserver.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class SpaceSavingCounter {
+    private final int capacity;
+    // индексированная min-куча: в корне всегда минимальный счётчик, positions хранит место ключа в куче
+    private final String[] keys;
+    private final long[] counts;
+    private final Map<String, Integer> positions;
+    private int size;
+
+    SpaceSavingCounter(int capacity) {
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    synchronized void offer(String key, long count) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            // счётчик только растёт, поэтому элемент может лишь опуститься вниз
+            counts[position] += count;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            keys[size] = key;
+            counts[size] = count;
+            positions.put(key, size);
+            siftUp(size++);
+            return;
+        }
+
+        // Space-Saving: новый ключ вытесняет минимальный счётчик (корень) и наследует его значение
+        positions.remove(keys[0]);
+        keys[0] = key;
+        counts[0] += count;
+        positions.put(key, 0);
+        siftDown(0);
+    }
+
+    synchronized void mergeInto(Map<String, Long> target) {
+        for (int i = 0; i < size; i++) {
+            target.merge(keys[i], counts[i], Long::sum);
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (counts[parent] <= counts[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String key = keys[i];
+        long count = counts[i];
+        keys[i] = keys[j];
+        counts[i] = counts[j];
+        keys[j] = key;
+        counts[j] = count;
+        positions.put(keys[i], i);
+        positions.put(keys[j], j);
+    }
+}
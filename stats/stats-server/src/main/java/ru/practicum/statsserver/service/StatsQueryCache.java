@@ -0,0 +1,240 @@
+package ru.practicum.statsserver.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+ * Кеш результатов /stats по нормализованному ключу (start, end, отсортированные uri, unique).
+ * После каждой записанной пачки HitIngestBuffer затронутые записи (по индексу uri -> ключи) патчатся:
+ * для unique=false к хитам прибавляется вес новых, unique=true без ip посетителей не пересчитать - запись удаляется.
+ *
+ * Патчить можно только значение, которое точно не видело пачку. Писатель один: перед записью epoch
+ * становится нечётным, после обновления кеша - снова чётным. Значение, прочитанное целиком при одном
+ * и том же чётном epoch, пачку не содержит; остальные при первом же затрагивающем хите удаляются.
+ * Регистрация в индексе и обновление записи идут внутри compute Caffeine, то есть атомарно с загрузкой.
+ */
+@Component
+public class StatsQueryCache {
+    private final boolean enabled;
+    private final Cache<Key, Entry> cache;
+    private final Map<String, Set<Key>> keysByUri = new ConcurrentHashMap<>();
+    private final Set<Key> keysWithoutUris = ConcurrentHashMap.newKeySet();
+    private final Counter patched;
+    private final Counter invalidated;
+    private volatile long epoch;
+
+    public StatsQueryCache(MeterRegistry meterRegistry,
+                           @Value("${stats.cache.enabled:true}") boolean enabled,
+                           @Value("${stats.cache.max-weight:64MB}") DataSize maxWeight,
+                           @Value("${stats.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight.toBytes())
+                .weigher((Key key, Entry entry) -> key.weight() + entry.weight())
+                .expireAfterWrite(expireAfterWrite)
+                .evictionListener((Key key, Entry entry, RemovalCause cause) -> unregister(key))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats.query");
+        this.patched = meterRegistry.counter("stats.cache.patched");
+        this.invalidated = meterRegistry.counter("stats.cache.invalidated");
+    }
+
+    public List<ViewStats> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                               Supplier<List<ViewStats>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(start, end, uris == null || uris.isEmpty() ? null : List.copyOf(new TreeSet<>(uris)), unique);
+        return cache.get(key, k -> {
+            register(k);
+            long epochBefore = epoch;
+            List<ViewStats> stats = List.copyOf(loader.get());
+            boolean clean = epochBefore % 2 == 0 && epoch == epochBefore;
+            return new Entry(stats, clean);
+        }).stats();
+    }
+
+    // вызывает только поток-писатель HitIngestBuffer
+    void beforeWrite() {
+        epoch++;
+    }
+
+    void afterWrite(List<EndpointHit> hits) {
+        try {
+            if (enabled) {
+                apply(hits);
+            }
+        } finally {
+            epoch++;
+        }
+    }
+
+    // после свёртки сырых хитов меняется точность диапазонов, начинающихся в свёрнутых днях
+    void invalidateStartingBefore(LocalDateTime bound) {
+        if (!enabled) {
+            return;
+        }
+        Set<Key> keys = new HashSet<>(keysWithoutUris);
+        keysByUri.values().forEach(keys::addAll);
+        for (Key key : keys) {
+            if (key.start().isBefore(bound)) {
+                cache.asMap().computeIfPresent(key, (k, entry) -> {
+                    unregister(k);
+                    invalidated.increment();
+                    return null;
+                });
+            }
+        }
+    }
+
+    private void apply(List<EndpointHit> hits) {
+        Map<String, List<EndpointHit>> hitsByUri = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            hitsByUri.computeIfAbsent(hit.getUri(), uri -> new ArrayList<>()).add(hit);
+        }
+
+        Set<Key> affected = new HashSet<>(keysWithoutUris);
+        for (String uri : hitsByUri.keySet()) {
+            Set<Key> keys = keysByUri.get(uri);
+            if (keys != null) {
+                affected.addAll(keys);
+            }
+        }
+
+        for (Key key : affected) {
+            cache.asMap().compute(key, (k, entry) -> {
+                if (entry == null) {
+                    unregister(k);
+                    return null;
+                }
+                List<EndpointHit> relevant = k.select(hits, hitsByUri);
+                if (relevant.isEmpty()) {
+                    return entry;
+                }
+                if (k.unique() || !entry.clean()) {
+                    unregister(k);
+                    invalidated.increment();
+                    return null;
+                }
+                patched.increment();
+                return entry.plus(relevant);
+            });
+        }
+    }
+
+    // множества ключей не меняются на месте, а заменяются копией: писатель читает их без блокировок
+    private void register(Key key) {
+        if (key.uris() == null) {
+            keysWithoutUris.add(key);
+            return;
+        }
+        for (String uri : key.uris()) {
+            keysByUri.compute(uri, (u, keys) -> {
+                Set<Key> result = keys != null ? new HashSet<>(keys) : new HashSet<>();
+                result.add(key);
+                return result;
+            });
+        }
+    }
+
+    private void unregister(Key key) {
+        if (key.uris() == null) {
+            keysWithoutUris.remove(key);
+            return;
+        }
+        for (String uri : key.uris()) {
+            keysByUri.computeIfPresent(uri, (u, keys) -> {
+                Set<Key> result = new HashSet<>(keys);
+                result.remove(key);
+                return result.isEmpty() ? null : result;
+            });
+        }
+    }
+
+    private record Key(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+
+        List<EndpointHit> select(List<EndpointHit> hits, Map<String, List<EndpointHit>> hitsByUri) {
+            List<EndpointHit> candidates;
+            if (uris == null) {
+                candidates = hits;
+            } else {
+                candidates = new ArrayList<>();
+                for (String uri : uris) {
+                    candidates.addAll(hitsByUri.getOrDefault(uri, List.of()));
+                }
+            }
+            List<EndpointHit> result = new ArrayList<>();
+            for (EndpointHit hit : candidates) {
+                if (!hit.getTimestamp().isBefore(start) && !hit.getTimestamp().isAfter(end)) {
+                    result.add(hit);
+                }
+            }
+            return result;
+        }
+
+        // грубая оценка занимаемой памяти в байтах
+        int weight() {
+            int weight = 96;
+            if (uris != null) {
+                for (String uri : uris) {
+                    weight += 48 + 2 * uri.length();
+                }
+            }
+            return weight;
+        }
+    }
+
+    private record Entry(List<ViewStats> stats, boolean clean) {
+
+        Entry plus(List<EndpointHit> hits) {
+            Map<List<String>, Long> counts = new LinkedHashMap<>();
+            for (ViewStats stat : stats) {
+                counts.put(List.of(stat.getApp(), stat.getUri()), stat.getHits());
+            }
+            for (EndpointHit hit : hits) {
+                counts.merge(List.of(hit.getApp(), hit.getUri()), hit.weight(), Long::sum);
+            }
+
+            List<ViewStats> result = new ArrayList<>(counts.size());
+            counts.forEach((appUri, count) -> result.add(ViewStats.builder()
+                    .app(appUri.get(0))
+                    .uri(appUri.get(1))
+                    .hits(count)
+                    .build()));
+            result.sort((a, b) -> Long.compare(b.getHits(), a.getHits()));
+            return new Entry(List.copyOf(result), true);
+        }
+
+        int weight() {
+            int weight = 64;
+            for (ViewStats stat : stats) {
+                weight += 64 + 2 * (stat.getApp().length() + stat.getUri().length());
+            }
+            return weight;
+        }
+    }
+}
@@ -2,54 +2,118 @@ package ru.practicum.statsserver.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.StatsQuery;
+import ru.practicum.statsdto.TopWindow;
 import ru.practicum.statsdto.ViewStats;
-import ru.practicum.statsserver.model.EndpointHitEntity;
-import ru.practicum.statsserver.repository.StatsRepository;
+import ru.practicum.statsdto.ViewStatsPoint;
+import ru.practicum.statsdto.ViewStatsSeries;
+import ru.practicum.statsserver.model.SeriesInterval;
+import ru.practicum.statsserver.repository.HitStore;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatsService {
-    private final StatsRepository statsRepository;
+    private final HitStore hitStore;
+    private final TopUriTracker topUriTracker;
+    private final HitIngestBuffer hitIngestBuffer;
+    private final StatsQueryCache statsQueryCache;
+
+    @Value("${stats.ingest.read-flush-wait:200ms}")
+    private Duration flushWait;
+
+    @Value("${stats.timeseries.max-points:10000}")
+    private int maxSeriesPoints;
 
     public void saveHit(EndpointHit endpointHit) {
-        EndpointHitEntity entity = EndpointHitEntity.builder()
-                .app(endpointHit.getApp())
-                .uri(endpointHit.getUri())
-                .ip(endpointHit.getIp())
-                .timestamp(endpointHit.getTimestamp())
-                .build();
-
-        EndpointHitEntity saved = statsRepository.save(entity);
-        log.info("Saved hit: id={}, app={}, uri={}, ip={}", saved.getId(), saved.getApp(), saved.getUri(), saved.getIp());
+        hitIngestBuffer.append(endpointHit);
+        log.debug("Accepted hit: app={}, uri={}, ip={}", endpointHit.getApp(), endpointHit.getUri(), endpointHit.getIp());
+        topUriTracker.record(endpointHit.getApp(), endpointHit.getUri(), endpointHit.getTimestamp(),
+                endpointHit.weight());
+    }
+
+    // пачка предагрегированных клиентом хитов, count каждого сохраняется как есть; WAL синхронизируется один раз
+    public void saveHits(List<EndpointHit> endpointHits) {
+        hitIngestBuffer.appendAll(endpointHits);
+        log.debug("Accepted {} hits", endpointHits.size());
+        endpointHits.forEach(hit -> topUriTracker.record(hit.getApp(), hit.getUri(), hit.getTimestamp(),
+                hit.weight()));
     }
 
     public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end,
                                     List<String> uris, Boolean unique) {
         log.info("Getting stats from repository...");
+        hitIngestBuffer.awaitFlushed(flushWait);
+
+        boolean isUnique = Boolean.TRUE.equals(unique);
+        List<ViewStats> viewStats = statsQueryCache.get(start, end, uris, isUnique,
+                () -> hitStore.getStats(start, end, uris, isUnique));
+        log.info("Found {} results", viewStats.size());
+        return viewStats;
+    }
 
-        List<Object[]> results;
-        if (Boolean.TRUE.equals(unique)) {
-            results = statsRepository.getUniqueStats(start, end, uris);
-        } else {
-            results = statsRepository.getStats(start, end, uris);
+    public List<ViewStats> getStats(StatsQuery query) {
+        if (query.getStart().isAfter(query.getEnd())) {
+            throw new IllegalArgumentException("Start date must be before end date");
         }
 
-        List<ViewStats> viewStats = results.stream()
-                .map(result -> ViewStats.builder()
-                        .app((String) result[0])
-                        .uri((String) result[1])
-                        .hits((Long) result[2])
-                        .build())
-                .collect(Collectors.toList());
+        List<String> uris = new ArrayList<>();
+        if (query.getUris() != null) {
+            uris.addAll(query.getUris());
+        }
+        if (query.getEventIds() != null) {
+            query.getEventIds().forEach(eventId -> uris.add("/events/" + eventId));
+        }
 
-        log.info("Found {} results", viewStats.size());
-        return viewStats;
+        return getStats(query.getStart(), query.getEnd(), uris.isEmpty() ? null : uris, query.getUnique());
     }
-}
\ No newline at end of file
+
+    // корзины выровнены по interval: первая и последняя покрывают интервал целиком, пустые заполняются нулями
+    public List<ViewStatsSeries> getTimeSeries(String uri, LocalDateTime start, LocalDateTime end,
+                                               SeriesInterval interval) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date must be before end date");
+        }
+        LocalDateTime from = interval.truncate(start);
+        LocalDateTime to = interval.truncate(end);
+        long points = interval.getUnit().between(from, to) + 1;
+        if (points > maxSeriesPoints) {
+            throw new IllegalArgumentException("Too many points: " + points
+                    + ". Use a larger interval or a shorter range");
+        }
+
+        hitIngestBuffer.awaitFlushed(flushWait);
+        List<ViewStatsSeries> series = hitStore.getTimeSeries(uri, from, to, interval);
+        for (ViewStatsSeries appSeries : series) {
+            Map<LocalDateTime, ViewStatsPoint> byStart = new HashMap<>();
+            appSeries.getPoints().forEach(point -> byStart.put(point.getStart(), point));
+
+            List<ViewStatsPoint> dense = new ArrayList<>((int) points);
+            for (LocalDateTime bucket = from; !bucket.isAfter(to); bucket = bucket.plus(1, interval.getUnit())) {
+                ViewStatsPoint point = byStart.get(bucket);
+                dense.add(point != null ? point : new ViewStatsPoint(bucket, 0L, 0L));
+            }
+            appSeries.setPoints(dense);
+        }
+        log.info("Found {} series with {} points for uri {}", series.size(), points, uri);
+        return series;
+    }
+
+    public List<ViewStats> getTopUris(String app, TopWindow window, Integer k, String uriPrefix) {
+        if (k == null || k <= 0) {
+            throw new IllegalArgumentException("Parameter k must be positive");
+        }
+        return topUriTracker.getTop(app, window, k, uriPrefix);
+    }
+
+}
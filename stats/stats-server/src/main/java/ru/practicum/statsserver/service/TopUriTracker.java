@@ -0,0 +1,104 @@
+package ru.practicum.statsserver.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.statsdto.TopWindow;
+import ru.practicum.statsdto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class TopUriTracker {
+    private final int capacity;
+    private final Map<String, Map<TopWindow, SlidingWindow>> windowsByApp = new ConcurrentHashMap<>();
+
+    public TopUriTracker(@Value("${stats.top.capacity:1000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void record(String app, String uri, LocalDateTime timestamp, long count) {
+        long now = System.currentTimeMillis();
+        long hitMillis = timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        windowsByApp.computeIfAbsent(app, this::createWindows)
+                .values()
+                .forEach(window -> window.offer(uri, hitMillis, now, count));
+    }
+
+    // uriPrefix отсекает чужие uri до выбора k, иначе они вытесняют нужные из ответа
+    public List<ViewStats> getTop(String app, TopWindow window, int k, String uriPrefix) {
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, Long>> countsByApp = new HashMap<>();
+        windowsByApp.forEach((appName, windows) -> {
+            if (app == null || app.equals(appName)) {
+                countsByApp.put(appName, windows.get(window).snapshot(now));
+            }
+        });
+
+        List<ViewStats> result = new ArrayList<>();
+        countsByApp.forEach((appName, counts) -> counts.forEach((uri, hits) -> {
+            if (uriPrefix == null || uri.startsWith(uriPrefix)) {
+                result.add(ViewStats.builder().app(appName).uri(uri).hits(hits).build());
+            }
+        }));
+        result.sort((a, b) -> Long.compare(b.getHits(), a.getHits()));
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    private Map<TopWindow, SlidingWindow> createWindows(String app) {
+        Map<TopWindow, SlidingWindow> windows = new EnumMap<>(TopWindow.class);
+        for (TopWindow window : TopWindow.values()) {
+            windows.put(window, new SlidingWindow(window, capacity));
+        }
+        return windows;
+    }
+
+    private static class SlidingWindow {
+        private final long bucketMillis;
+        private final long[] bucketIds;
+        private final SpaceSavingCounter[] buckets;
+        private final int capacity;
+
+        SlidingWindow(TopWindow window, int capacity) {
+            this.bucketMillis = window.getBucket().toMillis();
+            this.bucketIds = new long[window.bucketCount()];
+            this.buckets = new SpaceSavingCounter[window.bucketCount()];
+            this.capacity = capacity;
+        }
+
+        void offer(String uri, long hitMillis, long now, long count) {
+            long bucketId = hitMillis / bucketMillis;
+            long currentId = now / bucketMillis;
+            if (bucketId > currentId || bucketId <= currentId - buckets.length) {
+                return;
+            }
+            bucketFor(bucketId).offer(uri, count);
+        }
+
+        synchronized Map<String, Long> snapshot(long now) {
+            long currentId = now / bucketMillis;
+            Map<String, Long> counts = new HashMap<>();
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] != null && bucketIds[i] > currentId - buckets.length) {
+                    buckets[i].mergeInto(counts);
+                }
+            }
+            return counts;
+        }
+
+        private synchronized SpaceSavingCounter bucketFor(long bucketId) {
+            int index = (int) (bucketId % buckets.length);
+            if (buckets[index] == null || bucketIds[index] != bucketId) {
+                buckets[index] = new SpaceSavingCounter(capacity);
+                bucketIds[index] = bucketId;
+            }
+            return buckets[index];
+        }
+    }
+}
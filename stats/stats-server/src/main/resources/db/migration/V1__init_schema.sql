@@ -0,0 +1,23 @@
+CREATE TABLE IF NOT EXISTS endpoint_hits (
+    id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app       VARCHAR(255) NOT NULL,
+    uri       VARCHAR(255) NOT NULL,
+    ip        VARCHAR(255) NOT NULL,
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS uri_visitors (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app        VARCHAR(255) NOT NULL,
+    uri        VARCHAR(255) NOT NULL,
+    ip         VARCHAR(255) NOT NULL,
+    first_seen TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    last_seen  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits       BIGINT NOT NULL,
+    CONSTRAINT uq_uri_visitors_uri_app_ip UNIQUE (uri, app, ip)
+);
+
+-- /stats по списку uri за период и fallback на сырые хиты
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_uri_timestamp ON endpoint_hits (uri, timestamp);
+-- /stats без списка uri: сканирование только по диапазону времени
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_timestamp ON endpoint_hits (timestamp);
@@ -0,0 +1,2 @@
+-- клиент склеивает одинаковые хиты одной секунды, для COUNT(DISTINCT ip) это ничего не меняет
+ALTER TABLE endpoint_hits ADD COLUMN IF NOT EXISTS hits INTEGER NOT NULL DEFAULT 1;
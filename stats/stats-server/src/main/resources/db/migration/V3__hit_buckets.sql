@@ -0,0 +1,19 @@
+CREATE TABLE IF NOT EXISTS hit_buckets (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    granularity VARCHAR(2) NOT NULL,
+    app         VARCHAR(255) NOT NULL,
+    uri         VARCHAR(255) NOT NULL,
+    ip          VARCHAR(255) NOT NULL,
+    bucket      TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits        BIGINT NOT NULL,
+    -- /stats/timeseries читает по префиксу (granularity, uri, bucket)
+    CONSTRAINT uq_hit_buckets_granularity_uri_bucket_app_ip UNIQUE (granularity, uri, bucket, app, ip)
+);
+
+-- корзины для уже накопленных хитов
+INSERT INTO hit_buckets (granularity, app, uri, ip, bucket, hits)
+SELECT g.code, h.app, h.uri, h.ip, date_trunc(g.unit, h.timestamp), SUM(h.hits)
+FROM endpoint_hits h
+CROSS JOIN (VALUES ('1m', 'minute'), ('1h', 'hour'), ('1d', 'day')) AS g (code, unit)
+GROUP BY g.code, h.app, h.uri, h.ip, date_trunc(g.unit, h.timestamp)
+ON CONFLICT DO NOTHING;
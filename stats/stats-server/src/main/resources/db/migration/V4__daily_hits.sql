@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS daily_hits (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app      VARCHAR(255) NOT NULL,
+    uri      VARCHAR(255) NOT NULL,
+    day      DATE NOT NULL,
+    hits     BIGINT NOT NULL,
+    visitors BYTEA NOT NULL,
+    CONSTRAINT uq_daily_hits_uri_app_day UNIQUE (uri, app, day)
+);
+
+-- /stats без списка uri по свёрнутым дням
+CREATE INDEX IF NOT EXISTS idx_daily_hits_day ON daily_hits (day);
+-- удаление старых минутных и часовых корзин порциями
+CREATE INDEX IF NOT EXISTS idx_hit_buckets_granularity_bucket ON hit_buckets (granularity, bucket);
@@ -0,0 +1,18 @@
+-- нарастающий итог по uri: запрос с start не позже первого хита и end не раньше последнего
+-- отвечается одной строкой на uri, независимо от истории и числа посетителей
+CREATE TABLE IF NOT EXISTS uri_totals (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app        VARCHAR(255) NOT NULL,
+    uri        VARCHAR(255) NOT NULL,
+    first_seen TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    last_seen  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits       BIGINT NOT NULL,
+    visitors   BIGINT NOT NULL,
+    CONSTRAINT uq_uri_totals_uri_app UNIQUE (uri, app)
+);
+
+INSERT INTO uri_totals (app, uri, first_seen, last_seen, hits, visitors)
+SELECT app, uri, MIN(first_seen), MAX(last_seen), SUM(hits), COUNT(*)
+FROM uri_visitors
+GROUP BY app, uri
+ON CONFLICT (uri, app) DO NOTHING;
@@ -0,0 +1,2 @@
+-- склеенный хит несёт count до 100 000, сумма по строкам считается в BIGINT
+ALTER TABLE endpoint_hits ALTER COLUMN hits TYPE BIGINT;
@@ -0,0 +1,31 @@
+package ru.practicum.statsserver.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+class ColumnarHitStoreTest extends HitStoreContractTest {
+    @TempDir
+    Path directory;
+
+    private ColumnarHitStore columnar;
+
+    @Override
+    protected HitStore openStore() {
+        columnar = new ColumnarHitStore(directory.toString(), SEGMENT_SIZE, false);
+        return columnar;
+    }
+
+    @Override
+    protected HitStore reopenStore() throws IOException {
+        columnar.close();
+        return openStore();
+    }
+
+    @AfterEach
+    void closeStore() throws IOException {
+        columnar.close();
+    }
+}
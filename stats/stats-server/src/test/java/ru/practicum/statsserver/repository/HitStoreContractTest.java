@@ -0,0 +1,271 @@
+package ru.practicum.statsserver.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+import ru.practicum.statsdto.ViewStatsPoint;
+import ru.practicum.statsdto.ViewStatsSeries;
+import ru.practicum.statsserver.model.SeriesInterval;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*
+ * Общий контракт HitStore: каждая реализация обязана отвечать на эти запросы одинаково.
+ * Наследник открывает хранилище с маленьким сегментом, чтобы пачки пересекали границы сегментов.
+ */
+abstract class HitStoreContractTest {
+    protected static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 10, 12, 0, 0);
+    protected static final int SEGMENT_SIZE = 16;
+
+    protected HitStore store;
+
+    protected abstract HitStore openStore();
+
+    // то же хранилище после перезапуска процесса
+    protected abstract HitStore reopenStore() throws Exception;
+
+    @BeforeEach
+    void openHitStore() {
+        store = openStore();
+    }
+
+    @Test
+    void countsHitsPerAppAndUriSortedByHits() {
+        store.saveAll(List.of(
+                hit("ewm", "/events/1", "10.0.0.1", T0),
+                hit("ewm", "/events/1", "10.0.0.1", T0.plusSeconds(1)),
+                hit("ewm", "/events/2", "10.0.0.2", T0),
+                hit("ewm", "/events/1", "10.0.0.3", T0.plusSeconds(2)),
+                hit("other", "/events/1", "10.0.0.1", T0)));
+
+        List<ViewStats> stats = store.getStats(T0, T0.plusHours(1), null, false);
+
+        assertThat(stats).first().extracting(ViewStats::getHits).isEqualTo(3L);
+        assertThat(stats).isSortedAccordingTo((a, b) -> Long.compare(b.getHits(), a.getHits()));
+        assertThat(toMap(stats)).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "ewm /events/1", 3L,
+                "ewm /events/2", 1L,
+                "other /events/1", 1L));
+    }
+
+    @Test
+    void countsUniqueIps() {
+        store.saveAll(List.of(
+                hit("ewm", "/events/1", "10.0.0.1", T0),
+                hit("ewm", "/events/1", "10.0.0.1", T0.plusMinutes(5)),
+                hit("ewm", "/events/1", "10.0.0.2", T0.plusMinutes(6)),
+                hit("ewm", "/events/2", "10.0.0.1", T0)));
+
+        assertThat(toMap(store.getStats(T0, T0.plusHours(1), null, true))).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "ewm /events/1", 2L,
+                "ewm /events/2", 1L));
+    }
+
+    @Test
+    void expandsWeightedHits() {
+        store.saveAll(List.of(
+                weighted("ewm", "/events/1", "10.0.0.1", T0, 40),
+                hit("ewm", "/events/1", "10.0.0.2", T0)));
+
+        assertThat(toMap(store.getStats(T0, T0, List.of("/events/1"), false)))
+                .containsExactlyEntriesOf(Map.of("ewm /events/1", 41L));
+        assertThat(toMap(store.getStats(T0, T0, List.of("/events/1"), true)))
+                .containsExactlyEntriesOf(Map.of("ewm /events/1", 2L));
+    }
+
+    @Test
+    void rejectsCountsOutsideLimitsWithoutTouchingTotals() {
+        store.saveAll(List.of(hit("ewm", "/events/1", "10.0.0.1", T0)));
+
+        for (long count : new long[]{0, -5, EndpointHit.MAX_COUNT + 1}) {
+            assertThatThrownBy(() -> store.saveAll(List.of(
+                    hit("ewm", "/events/1", "10.0.0.2", T0),
+                    weighted("ewm", "/events/1", "10.0.0.3", T0, count))))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        store.saveAll(List.of(weighted("ewm", "/events/1", "10.0.0.4", T0, EndpointHit.MAX_COUNT)));
+
+        assertThat(toMap(store.getStats(T0, T0, List.of("/events/1"), false)))
+                .containsExactlyEntriesOf(Map.of("ewm /events/1", EndpointHit.MAX_COUNT + 1));
+        assertThat(toMap(store.getStats(T0, T0, null, true)))
+                .containsExactlyEntriesOf(Map.of("ewm /events/1", 2L));
+    }
+
+    @Test
+    void filtersByUris() {
+        store.saveAll(List.of(
+                hit("ewm", "/events/1", "10.0.0.1", T0),
+                hit("ewm", "/events/2", "10.0.0.1", T0),
+                hit("ewm", "/events/3", "10.0.0.1", T0)));
+
+        assertThat(toMap(store.getStats(T0, T0.plusHours(1), List.of("/events/1", "/events/3", "/events/4"), false)))
+                .containsOnlyKeys("ewm /events/1", "ewm /events/3");
+        assertThat(store.getStats(T0, T0.plusHours(1), List.of(), false)).hasSize(3);
+    }
+
+    @Test
+    void includesBothRangeEdges() {
+        LocalDateTime start = T0;
+        LocalDateTime end = T0.plusMinutes(10);
+        store.saveAll(List.of(
+                hit("ewm", "/events/1", "10.0.0.1", start.minusSeconds(1)),
+                hit("ewm", "/events/1", "10.0.0.2", start),
+                hit("ewm", "/events/1", "10.0.0.3", end),
+                hit("ewm", "/events/1", "10.0.0.4", end.plusSeconds(1))));
+
+        for (List<String> uris : uriFilters("/events/1")) {
+            assertThat(toMap(store.getStats(start, end, uris, false)))
+                    .containsExactlyEntriesOf(Map.of("ewm /events/1", 2L));
+            assertThat(toMap(store.getStats(start, end, uris, true)))
+                    .containsExactlyEntriesOf(Map.of("ewm /events/1", 2L));
+        }
+        assertThat(store.getStats(end.plusSeconds(2), end.plusHours(1), null, false)).isEmpty();
+    }
+
+    // диапазон, покрывающий всю историю uri, и частичные диапазоны должны давать точный подсчёт
+    @Test
+    void answersWholeHistoryAndPartialRangesAlike() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            hits.add(hit("ewm", "/events/" + (i % 3), "10.0.0." + (i % 7), T0.plusMinutes(i)));
+        }
+        store.saveAll(hits);
+
+        assertRangeMatches(hits, T0.minusDays(1), T0.plusDays(1));
+        assertRangeMatches(hits, T0, T0.plusMinutes(29));
+        assertRangeMatches(hits, T0.plusMinutes(5), T0.plusMinutes(17));
+        assertRangeMatches(hits, T0.minusDays(1), T0.plusMinutes(3));
+    }
+
+    @Test
+    void keepsHitsAcrossSegmentRollover() {
+        List<EndpointHit> all = new ArrayList<>();
+        for (int batch = 0; batch < 9; batch++) {
+            List<EndpointHit> hits = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                hits.add(hit("ewm", "/events/" + (i % 2), "10.0.1." + batch, T0.plusSeconds(batch * 7L + i)));
+            }
+            store.saveAll(hits);
+            all.addAll(hits);
+        }
+        store.saveAll(List.of(weighted("ewm", "/events/0", "10.0.2.1", T0.plusMinutes(2), SEGMENT_SIZE * 2)));
+        all.add(weighted("ewm", "/events/0", "10.0.2.1", T0.plusMinutes(2), SEGMENT_SIZE * 2));
+
+        assertRangeMatches(all, T0, T0.plusMinutes(5));
+        assertRangeMatches(all, T0.plusSeconds(10), T0.plusSeconds(40));
+    }
+
+    @Test
+    void keepsHitsAfterReopen() throws Exception {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < SEGMENT_SIZE + 5; i++) {
+            hits.add(hit("ewm", "/events/" + (i % 4), "10.0.0." + (i % 5), T0.plusSeconds(i)));
+        }
+        store.saveAll(hits);
+
+        store = reopenStore();
+        assertRangeMatches(hits, T0, T0.plusHours(1));
+
+        EndpointHit late = hit("ewm", "/events/9", "10.0.0.9", T0.plusSeconds(30));
+        store.saveAll(List.of(late));
+        hits.add(late);
+        assertRangeMatches(hits, T0, T0.plusHours(1));
+    }
+
+    @Test
+    void buildsHourlySeriesWithoutEmptyBuckets() {
+        store.saveAll(List.of(
+                hit("ewm", "/events/1", "10.0.0.1", T0.plusMinutes(1)),
+                hit("ewm", "/events/1", "10.0.0.1", T0.plusMinutes(2)),
+                hit("ewm", "/events/1", "10.0.0.2", T0.plusMinutes(59)),
+                weighted("ewm", "/events/1", "10.0.0.3", T0.plusHours(2).plusMinutes(30), 5),
+                hit("ewm", "/events/2", "10.0.0.1", T0.plusMinutes(1)),
+                hit("other", "/events/1", "10.0.0.1", T0.plusHours(3))));
+
+        List<ViewStatsSeries> series = store.getTimeSeries("/events/1", T0, T0.plusHours(2), SeriesInterval.HOUR);
+
+        assertThat(series).hasSize(1);
+        assertThat(series.get(0).getApp()).isEqualTo("ewm");
+        assertThat(series.get(0).getPoints())
+                .extracting(ViewStatsPoint::getStart, ViewStatsPoint::getHits, ViewStatsPoint::getUnique)
+                .containsExactly(
+                        org.assertj.core.groups.Tuple.tuple(T0, 3L, 2L),
+                        org.assertj.core.groups.Tuple.tuple(T0.plusHours(2), 5L, 1L));
+    }
+
+    protected void assertRangeMatches(List<EndpointHit> hits, LocalDateTime start, LocalDateTime end) {
+        for (boolean unique : new boolean[]{false, true}) {
+            Map<String, Long> expected = expected(hits, start, end, unique);
+            assertThat(toMap(store.getStats(start, end, null, unique)))
+                    .as("all uris, %s..%s, unique=%s", start, end, unique)
+                    .containsExactlyInAnyOrderEntriesOf(expected);
+            List<String> uris = hits.stream().map(EndpointHit::getUri).distinct().toList();
+            assertThat(toMap(store.getStats(start, end, uris, unique)))
+                    .as("uri list, %s..%s, unique=%s", start, end, unique)
+                    .containsExactlyInAnyOrderEntriesOf(expected);
+        }
+    }
+
+    private static Map<String, Long> expected(List<EndpointHit> hits, LocalDateTime start, LocalDateTime end,
+                                              boolean unique) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        Map<String, List<String>> ips = new LinkedHashMap<>();
+        for (EndpointHit hit : hits) {
+            if (hit.getTimestamp().isBefore(start) || hit.getTimestamp().isAfter(end)) {
+                continue;
+            }
+            String key = hit.getApp() + " " + hit.getUri();
+            if (unique) {
+                List<String> seen = ips.computeIfAbsent(key, k -> new ArrayList<>());
+                if (!seen.contains(hit.getIp())) {
+                    seen.add(hit.getIp());
+                    counts.merge(key, 1L, Long::sum);
+                }
+            } else {
+                counts.merge(key, hit.weight(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static List<List<String>> uriFilters(String uri) {
+        List<List<String>> filters = new ArrayList<>();
+        filters.add(null);
+        filters.add(List.of(uri));
+        return filters;
+    }
+
+    private static Map<String, Long> toMap(List<ViewStats> stats) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        stats.forEach(view -> result.put(view.getApp() + " " + view.getUri(), view.getHits()));
+        assertThat(result).as("one row per app and uri").hasSameSizeAs(stats);
+        return result;
+    }
+
+    protected static EndpointHit hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    protected static EndpointHit weighted(String app, String uri, String ip, LocalDateTime timestamp, long count) {
+        return EndpointHit.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .count(count)
+                .build();
+    }
+}
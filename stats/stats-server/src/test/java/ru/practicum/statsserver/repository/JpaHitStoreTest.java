@@ -0,0 +1,170 @@
+package ru.practicum.statsserver.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.statsdto.EndpointHit;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * JpaHitStore пишет SQL под PostgreSQL, поэтому тест поднимает встроенный PostgreSQL.
+ * Транзакция теста отключена: saveAll должен по-настоящему коммитить, как у писателя HitIngestBuffer.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(JpaHitStore.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JpaHitStoreTest extends HitStoreContractTest {
+    private static final LocalDate DAY = T0.toLocalDate();
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private JpaHitStore jpaHitStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) throws IOException {
+        if (postgres == null) {
+            postgres = EmbeddedPostgres.start();
+        }
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        // хиты теста в 2024 году: часовые корзины их дней должны считаться ещё не удалёнными
+        registry.add("stats.retention.hour-buckets", () -> "36500d");
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+            postgres = null;
+        }
+    }
+
+    @BeforeEach
+    void clearTables() {
+        jdbcTemplate.execute("TRUNCATE endpoint_hits, uri_visitors, uri_totals, hit_buckets, daily_hits");
+        jpaHitStore.loadCompactedUntil();
+    }
+
+    @Override
+    protected HitStore openStore() {
+        return jpaHitStore;
+    }
+
+    // состояние JpaHitStore целиком в БД, кроме границы свёрнутых дней
+    @Override
+    protected HitStore reopenStore() {
+        jpaHitStore.loadCompactedUntil();
+        return jpaHitStore;
+    }
+
+    // свёртка дня не меняет ответ на диапазоны, границы которых совпадают с границами дней
+    @Test
+    void compactionKeepsWholeDayAnswers() {
+        List<EndpointHit> hits = spanTwoDays();
+        store.saveAll(hits);
+
+        compact(DAY);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM endpoint_hits WHERE timestamp < ?",
+                Long.class, DAY.plusDays(1).atStartOfDay())).isZero();
+        assertRangeMatches(hits, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay().minusSeconds(1));
+        assertRangeMatches(hits, DAY.minusDays(3).atStartOfDay(), DAY.plusDays(3).atStartOfDay());
+    }
+
+    // свёрнутый день и сырые хиты следующего складываются без пропусков и двойного счёта
+    @Test
+    void joinsCompactedDaysWithRawHitsAtBoundary() {
+        List<EndpointHit> hits = spanTwoDays();
+        store.saveAll(hits);
+
+        compact(DAY);
+
+        assertRangeMatches(hits, DAY.atStartOfDay(), DAY.plusDays(1).atTime(1, 30));
+        // начало ровно на compactedUntil: свёрнутые дни не затрагиваются
+        assertRangeMatches(hits, DAY.plusDays(1).atStartOfDay(), DAY.plusDays(2).atStartOfDay());
+        assertRangeMatches(hits, DAY.plusDays(1).atTime(0, 30), DAY.plusDays(1).atTime(3, 0));
+    }
+
+    // опоздавший хит за свёрнутый день виден сразу и после повторной свёртки не удваивается
+    @Test
+    void foldsLateHitsIntoCompactedDayOnce() {
+        List<EndpointHit> hits = spanTwoDays();
+        store.saveAll(hits);
+        compact(DAY);
+
+        List<EndpointHit> late = List.of(
+                hit("ewm", "/events/1", "10.0.0.1", DAY.atTime(13, 0)),
+                hit("ewm", "/events/1", "10.0.9.9", DAY.atTime(14, 0)));
+        store.saveAll(late);
+        hits.addAll(late);
+        assertRangeMatches(hits, DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay());
+
+        compact(DAY);
+        compact(DAY);
+        assertRangeMatches(hits, DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay());
+    }
+
+    // неполные свёрнутые дни отвечаются из часовых корзин: на границах часов точно
+    @Test
+    void answersPartialCompactedDaysFromHourBuckets() {
+        List<EndpointHit> hits = spanTwoDays();
+        store.saveAll(hits);
+        compact(DAY);
+        compact(DAY.plusDays(1));
+
+        assertRangeMatches(hits, DAY.atTime(5, 0), DAY.atTime(9, 59, 59));
+        assertRangeMatches(hits, DAY.atTime(5, 0), DAY.plusDays(1).atTime(2, 59, 59));
+        assertRangeMatches(hits, DAY.atTime(20, 0), DAY.plusDays(2).atStartOfDay());
+        assertRangeMatches(hits, DAY.atStartOfDay(), DAY.plusDays(1).atTime(0, 59, 59));
+    }
+
+    // граница внутри часа свёрнутого дня учитывает этот час целиком, но не день
+    @Test
+    void roundsSubHourBoundsOfCompactedDaysToWholeHours() {
+        List<EndpointHit> hits = spanTwoDays();
+        store.saveAll(hits);
+        compact(DAY);
+
+        for (boolean unique : new boolean[]{false, true}) {
+            assertThat(store.getStats(DAY.atTime(5, 30), DAY.atTime(9, 10), null, unique))
+                    .containsExactlyInAnyOrderElementsOf(
+                            store.getStats(DAY.atTime(5, 0), DAY.atTime(9, 59, 59), null, unique));
+        }
+        assertRangeMatches(hits, DAY.atTime(5, 0), DAY.atTime(9, 59, 59));
+    }
+
+    // 40 хитов с 02:00 дня T0 до 04:00 следующего, три uri и пять ip
+    private static List<EndpointHit> spanTwoDays() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            hits.add(hit("ewm", "/events/" + (i % 3), "10.0.0." + (i % 5), DAY.atTime(2, 0).plusMinutes(i * 40L)));
+        }
+        return hits;
+    }
+
+    private void compact(LocalDate day) {
+        jpaHitStore.markCompacting(day);
+        jpaHitStore.compact(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+    }
+}
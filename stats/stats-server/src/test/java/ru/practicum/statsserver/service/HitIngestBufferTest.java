@@ -0,0 +1,116 @@
+package ru.practicum.statsserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+import ru.practicum.statsdto.ViewStatsSeries;
+import ru.practicum.statsserver.model.SeriesInterval;
+import ru.practicum.statsserver.repository.HitStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.statsserver.service.HitWriteAheadLogTest.hit;
+
+class HitIngestBufferTest {
+    private static final String POISON_URI = "/events/poison";
+
+    @TempDir
+    Path directory;
+
+    private final FakeHitStore store = new FakeHitStore();
+    private HitIngestBuffer buffer;
+
+    @AfterEach
+    void stopBuffer() {
+        if (buffer != null && buffer.isRunning()) {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    void replaysWalTailOnStart() throws Exception {
+        HitWriteAheadLog wal = new HitWriteAheadLog(directory.resolve("hits.wal"), false, 1 << 20);
+        wal.reset();
+        wal.append(List.of(HitWriteAheadLog.encode(hit(1)), HitWriteAheadLog.encode(hit(2)),
+                HitWriteAheadLog.encode(hit(3))));
+        wal.checkpoint(1);
+        wal.close();
+
+        buffer = buffer(2);
+        buffer.start();
+
+        assertThat(store.saved).containsExactly(hit(2), hit(3));
+        assertThat(store.batches).isEqualTo(1);
+        // после replay журнал начинается заново, повторный старт ничего не пишет
+        buffer.stop();
+        store.saved.clear();
+        buffer = buffer(2);
+        buffer.start();
+        assertThat(store.saved).isEmpty();
+    }
+
+    @Test
+    void deadLettersPoisonedRowAndCommitsTheRestOfBatch() throws Exception {
+        buffer = buffer(100);
+        buffer.start();
+
+        EndpointHit poison = hit(3);
+        poison.setUri(POISON_URI);
+        buffer.appendAll(List.of(hit(1), hit(2), poison, hit(4), hit(5)));
+        buffer.awaitFlushed(Duration.ofSeconds(5));
+
+        assertThat(store.saved).containsExactlyInAnyOrder(hit(1), hit(2), hit(4), hit(5));
+        assertThat(Files.readAllLines(directory.resolve("hits.wal.dead")))
+                .singleElement().asString().contains(POISON_URI);
+
+        // плохая строка не должна вернуться после рестарта
+        buffer.stop();
+        store.saved.clear();
+        buffer = buffer(100);
+        buffer.start();
+        assertThat(store.saved).isEmpty();
+    }
+
+    private HitIngestBuffer buffer(int batchSize) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StatsQueryCache cache = new StatsQueryCache(registry, false, DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        return new HitIngestBuffer(store, cache, registry, 1024, batchSize, Duration.ofMillis(10),
+                Duration.ofMillis(100), true, directory.resolve("hits.wal").toString(), false, DataSize.ofMegabytes(1));
+    }
+
+    // пачка с POISON_URI отвергается целиком, как БД отвергает её по ограничению
+    private static class FakeHitStore implements HitStore {
+        private final List<EndpointHit> saved = new CopyOnWriteArrayList<>();
+        private int batches;
+
+        @Override
+        public void saveAll(List<EndpointHit> hits) {
+            if (hits.stream().anyMatch(hit -> POISON_URI.equals(hit.getUri()))) {
+                throw new IllegalArgumentException("uri rejected: " + POISON_URI);
+            }
+            saved.addAll(hits);
+            batches++;
+        }
+
+        @Override
+        public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ViewStatsSeries> getTimeSeries(String uri, LocalDateTime start, LocalDateTime end,
+                                                   SeriesInterval interval) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.practicum.statsserver.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.statsdto.EndpointHit;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitWriteAheadLogTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 10, 12, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysOnlyRecordsAfterCheckpointAfterUncleanStop() throws IOException {
+        HitWriteAheadLog wal = open(1 << 20);
+        wal.reset();
+        wal.append(encode(hit(1), hit(2), hit(3)));
+        wal.checkpoint(1);
+        // падение: ни stop, ни close - файлы остаются как есть
+        HitWriteAheadLog reopened = open(1 << 20);
+
+        assertThat(reopened.readPending()).containsExactly(hit(2), hit(3));
+        reopened.close();
+        wal.close();
+    }
+
+    @Test
+    void dropsTornLastRecord() throws IOException {
+        HitWriteAheadLog wal = open(1 << 20);
+        wal.reset();
+        wal.append(encode(hit(1), hit(2)));
+        wal.close();
+        Path segment = directory.resolve("hits.wal.0");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        HitWriteAheadLog reopened = open(1 << 20);
+        assertThat(reopened.readPending()).containsExactly(hit(1));
+        reopened.close();
+    }
+
+    @Test
+    void deletesClosedSegmentOnlyOnceCheckpointCoversIt() throws IOException {
+        // сегмент в один байт: каждая следующая пачка открывает новый
+        HitWriteAheadLog wal = open(1);
+        wal.reset();
+        wal.append(encode(hit(1), hit(2)));
+        wal.append(encode(hit(3)));
+        wal.append(encode(hit(4)));
+
+        wal.checkpoint(1);
+        assertThat(directory.resolve("hits.wal.0")).exists();
+
+        wal.checkpoint(2);
+        assertThat(directory.resolve("hits.wal.0")).doesNotExist();
+        assertThat(directory.resolve("hits.wal.2")).exists();
+
+        // активный сегмент не удаляется, даже если checkpoint покрыл все его записи
+        wal.checkpoint(4);
+        assertThat(directory.resolve("hits.wal.2")).doesNotExist();
+        assertThat(directory.resolve("hits.wal.3")).exists();
+        wal.close();
+
+        HitWriteAheadLog reopened = open(1);
+        assertThat(reopened.readPending()).isEmpty();
+        reopened.close();
+    }
+
+    @Test
+    void resetRemovesReplayedSegments() throws IOException {
+        HitWriteAheadLog wal = open(1);
+        wal.reset();
+        wal.append(encode(hit(1)));
+        wal.append(encode(hit(2)));
+        wal.close();
+
+        HitWriteAheadLog reopened = open(1);
+        List<EndpointHit> pending = reopened.readPending();
+        reopened.markReplayed(pending.size());
+        reopened.reset();
+
+        assertThat(pending).containsExactly(hit(1), hit(2));
+        assertThat(directory.resolve("hits.wal.1")).doesNotExist();
+        assertThat(reopened.readPending()).isEmpty();
+        reopened.close();
+    }
+
+    @Test
+    void writesDeadLetterNextToLog() throws IOException {
+        HitWriteAheadLog wal = open(1 << 20);
+        wal.deadLetter(hit(7), "bad\nrow");
+        wal.close();
+
+        assertThat(Files.readAllLines(directory.resolve("hits.wal.dead")))
+                .singleElement().asString().contains("/events/7").endsWith("bad row");
+    }
+
+    private HitWriteAheadLog open(long segmentBytes) {
+        return new HitWriteAheadLog(directory.resolve("hits.wal"), false, segmentBytes);
+    }
+
+    private static List<byte[]> encode(EndpointHit... hits) {
+        return List.of(hits).stream().map(HitWriteAheadLog::encode).toList();
+    }
+
+    static EndpointHit hit(int event) {
+        return EndpointHit.builder()
+                .app("ewm")
+                .uri("/events/" + event)
+                .ip("10.0.0." + event)
+                .timestamp(T0.plusSeconds(event))
+                .count(1L)
+                .build();
+    }
+}
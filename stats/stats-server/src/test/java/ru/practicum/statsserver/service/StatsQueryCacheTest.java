@@ -0,0 +1,113 @@
+package ru.practicum.statsserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.statsdto.EndpointHit;
+import ru.practicum.statsdto.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsQueryCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 10, 0, 0, 0);
+    private static final LocalDateTime END = START.plusDays(1);
+    private static final String URI = "/events/1";
+
+    private final StatsQueryCache cache = new StatsQueryCache(new SimpleMeterRegistry(), true,
+            DataSize.ofMegabytes(1), Duration.ofMinutes(10));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void patchesEntryLoadedBeforeWrite() {
+        assertThat(get(false, 5)).containsExactly(stats(5));
+
+        write(hit(URI, END.minusHours(1)), hit("/events/2", END.minusHours(1)), hit(URI, END.plusSeconds(1)));
+
+        assertThat(get(false, 100)).containsExactly(stats(6));
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void dropsUniqueEntryOnWrite() {
+        get(true, 5);
+
+        write(hit(URI, END.minusHours(1)));
+
+        assertThat(get(true, 7)).containsExactly(stats(7));
+        assertThat(loads).hasValue(2);
+    }
+
+    // загрузка могла прочитать пачку, а могла и нет: патч посчитал бы её дважды, поэтому запись удаляется
+    @Test
+    void dropsEntryWhoseLoadOverlapsWrite() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch writeStarted = new CountDownLatch(1);
+
+        CompletableFuture<List<ViewStats>> reader = CompletableFuture.supplyAsync(() ->
+                cache.get(START, END, List.of(URI), false, () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    await(writeStarted);
+                    return List.of(stats(5));
+                }));
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            await(loading);
+            cache.beforeWrite();
+            writeStarted.countDown();
+            // ждёт конца загрузки внутри compute Caffeine и видит запись, загруженную при нечётном epoch
+            cache.afterWrite(List.of(hit(URI, END.minusHours(1))));
+        });
+
+        assertThat(reader.get(5, TimeUnit.SECONDS)).containsExactly(stats(5));
+        writer.get(5, TimeUnit.SECONDS);
+
+        assertThat(get(false, 6)).containsExactly(stats(6));
+        assertThat(loads).hasValue(2);
+    }
+
+    private List<ViewStats> get(boolean unique, long hits) {
+        return cache.get(START, END, List.of(URI), unique, () -> {
+            loads.incrementAndGet();
+            return List.of(stats(hits));
+        });
+    }
+
+    private void write(EndpointHit... hits) {
+        cache.beforeWrite();
+        cache.afterWrite(List.of(hits));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ViewStats stats(long hits) {
+        return ViewStats.builder()
+                .app("ewm")
+                .uri(URI)
+                .hits(hits)
+                .build();
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(timestamp)
+                .build();
+    }
+}